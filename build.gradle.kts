@@ -35,6 +35,21 @@ repositories {
     mavenCentral()
 }
 
+// JMH benchmarks live in src/jmh/java and run against the main classes; see the README
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations {
+    named(jmh.implementationConfigurationName) {
+        extendsFrom(configurations.implementation.get())
+    }
+    named(jmh.runtimeOnlyConfigurationName) {
+        extendsFrom(configurations.runtimeOnly.get())
+    }
+}
+
 dependencies {
     implementation(libs.lombok)
     implementation(libs.spring.boot.starter.data.jpa)
@@ -43,10 +58,12 @@ dependencies {
     implementation(libs.spring.boot.starter.data.rest)
     implementation(libs.spring.boot.starter.web)
     implementation(libs.spring.boot.starter.security)
+    implementation(libs.spring.boot.starter.actuator)
     implementation(libs.spring.security.config)
     implementation(libs.spring.security.web)
     implementation(libs.batik.transcoder)
     implementation(libs.jboss.logging)
+    implementation(libs.micrometer.registry.prometheus)
     implementation(libs.jjwt.api)
     runtimeOnly(libs.jjwt.impl)
     runtimeOnly(libs.jjwt.jackson)
@@ -55,9 +72,48 @@ dependencies {
 
     testImplementation(libs.spring.boot.starter.test)
     testImplementation(libs.mockito.core)
+
+    "jmhImplementation"(libs.jmh.core)
+    "jmhAnnotationProcessor"(libs.jmh.generator.annprocess)
 }
 
 tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks, measuring throughput and allocation rate."
+    group = "verification"
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+
+    val includes = providers.gradleProperty("jmhIncludes").orElse(".*")
+    val results = providers.gradleProperty("jmhResults").orElse("build/results/jmh/results.json")
+    doFirst {
+        val resultsFile = file(results.get())
+        resultsFile.parentFile.mkdirs()
+
+        // The JSON results name the JVM of every benchmark; note the machine next to them
+        val cpuInfo = file("/proc/cpuinfo")
+        val cpuModel = if (cpuInfo.exists()) {
+            cpuInfo.readLines().firstOrNull { it.startsWith("model name") }?.substringAfter(':')?.trim()
+        } else {
+            null
+        }
+        resultsFile.resolveSibling(resultsFile.nameWithoutExtension + "-machine.txt").writeText(
+            listOf(
+                "os=${System.getProperty("os.name")} ${System.getProperty("os.version")}",
+                "arch=${System.getProperty("os.arch")}",
+                "cpu=${cpuModel ?: "unknown"}",
+                "processors=${Runtime.getRuntime().availableProcessors()}",
+                "launcherJdk=${System.getProperty("java.vendor")} ${System.getProperty("java.version")}"
+            ).joinToString("\n", postfix = "\n")
+        )
+    }
+    args = listOf(
+        includes.get(),
+        "-prof", "gc",
+        "-rf", "json",
+        "-rff", file(results.get()).absolutePath
+    )
+}
@@ -0,0 +1,81 @@
+package no.mattikj.mkd.duckai.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import no.mattikj.mkd.duckai.domain.Scenario;
+
+/**
+ * Reproducible synthetic scenarios for the benchmarks.
+ * <p>
+ * Prompts are drawn from a fixed vocabulary with a Zipf-like skew, so a few words are in a
+ * large share of all prompts, like "duck" is in real traffic, and long posting lists are
+ * exercised.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public final class SyntheticCorpus {
+
+    private static final int VOCABULARY = 20_000;
+    private static final long SEED = 42;
+
+    private SyntheticCorpus() {
+    }
+
+    public static List<Scenario> scenarios(final int size) {
+        final Random random = new Random(SEED);
+        final List<Scenario> scenarios = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            scenarios.add(new Scenario((long) i + 1, (long) i + 1, prompt(random) + " " + i, "Answer " + i));
+        }
+        return scenarios;
+    }
+
+    /**
+     * Returns the same prompts as {@link #scenarios(int)}, with Markdown answers of about the
+     * given length each, like the long answers learned from web lookups.
+     */
+    public static List<Scenario> scenarios(final int size, final int answerLength) {
+        final Random random = new Random(SEED);
+        final List<Scenario> scenarios = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            scenarios.add(new Scenario((long) i + 1, (long) i + 1, prompt(random) + " " + i, markdownAnswer(i, answerLength)));
+        }
+        return scenarios;
+    }
+
+    /**
+     * Returns prompts from the same distribution as the scenario prompts. Most of them match no
+     * scenario exactly, so they exercise the similarity search rather than exact hits.
+     */
+    public static List<String> prompts(final int count) {
+        final Random random = new Random(SEED + 1);
+        final List<String> prompts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            prompts.add(prompt(random));
+        }
+        return prompts;
+    }
+
+    private static String markdownAnswer(final int index, final int length) {
+        final StringBuilder answer = new StringBuilder(length + 64)
+            .append("**Answer ").append(index).append("**\n\n");
+        while (answer.length() < length) {
+            answer.append("Ducks are waterfowl of the family *Anatidae*; see [Duck](https://en.wikipedia.org/wiki/Duck). ");
+        }
+        return answer.toString();
+    }
+
+    private static String prompt(final Random random) {
+        final StringBuilder prompt = new StringBuilder("What is");
+        final int words = 2 + random.nextInt(6);
+        for (int w = 0; w < words; w++) {
+            // Squaring a uniform draw makes low word numbers far more common
+            final double draw = random.nextDouble();
+            prompt.append(" word").append((int) (draw * draw * VOCABULARY));
+        }
+        return prompt.append('?').toString();
+    }
+}
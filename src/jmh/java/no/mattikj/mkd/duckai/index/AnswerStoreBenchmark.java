@@ -0,0 +1,126 @@
+package no.mattikj.mkd.duckai.index;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import no.mattikj.mkd.duckai.benchmark.SyntheticCorpus;
+import no.mattikj.mkd.duckai.domain.Scenario;
+import no.mattikj.mkd.duckai.domain.ScenarioItem;
+import no.mattikj.mkd.duckai.domain.SparseVector;
+
+/**
+ * Compares answers kept as heap strings with answers kept off the heap.
+ * <p>
+ * {@code rebuild} builds a full index next to the live one and swaps it in, as a full reload
+ * does; the {@code gc.time} and {@code gc.count} results of {@code -prof gc} give the GC time it
+ * causes. {@code findAndDecode} measures the lookup of an answer including decoding it. After
+ * each trial the heap still used after a full GC, the estimated heap of the index and its
+ * direct memory are printed.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-XX:MaxDirectMemorySize=6g"})
+public class AnswerStoreBenchmark {
+
+    private static final Tokenizer TOKENIZER = Tokenizer.words(Set.of(
+        "the", "is", "a", "an", "and", "or", "what", "how", "are"
+    ));
+    private static final int PROMPTS = 1_024;
+
+    @Param({"false", "true"})
+    private boolean offHeap;
+
+    @Param({"100000", "1000000"})
+    private int corpusSize;
+
+    @Param({"2000"})
+    private int answerLength;
+
+    private List<Scenario> scenarios;
+    private ScenarioIndex live;
+    private SparseVector[] vectors;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scenarios = SyntheticCorpus.scenarios(corpusSize, answerLength);
+        live = build();
+        vectors = SyntheticCorpus.prompts(PROMPTS).stream()
+            .map(prompt -> TOKENIZER.vectorize(prompt, live.dictionary()))
+            .toArray(SparseVector[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void reportFootprint() {
+        // Only the index should be left to measure
+        scenarios = null;
+        vectors = null;
+        System.gc();
+        final long usedHeap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        System.out.printf(
+            "%noffHeap=%s corpusSize=%d: used heap after GC %d MB, index heap estimate %d MB, off-heap %d MB%n",
+            offHeap,
+            corpusSize,
+            usedHeap >> 20,
+            live.estimatedMemoryBytes() >> 20,
+            live.offHeapBytes() >> 20
+        );
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ScenarioIndex rebuild() {
+        final ScenarioIndex rebuilt = build();
+        live = rebuilt;
+        return rebuilt;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public String findAndDecode() {
+        next = (next + 1) & (PROMPTS - 1);
+        final ScenarioItem item = live.findBestMatch(vectors[next], ScoringMode.COSINE, 0.0);
+        return item == null ? null : item.response();
+    }
+
+    private ScenarioIndex build() {
+        final ScenarioIndex index = new ScenarioIndex(
+            1,
+            Integer.MAX_VALUE,
+            null,
+            offHeap ? AnswerStore.offHeap() : AnswerStore.onHeap()
+        );
+        for (final Scenario scenario : scenarios) {
+            // A reload reads a fresh copy of every answer from the database
+            index.add(new ScenarioItem(
+                scenario.question(),
+                index.answers().store(new String(scenario.answer())),
+                TOKENIZER.vectorizeForIndex(scenario.question(), index.dictionary())
+            ));
+        }
+        index.refreshStatistics();
+        return index;
+    }
+}
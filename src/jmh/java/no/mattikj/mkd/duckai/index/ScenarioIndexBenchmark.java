@@ -0,0 +1,87 @@
+package no.mattikj.mkd.duckai.index;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import no.mattikj.mkd.duckai.benchmark.SyntheticCorpus;
+import no.mattikj.mkd.duckai.domain.Scenario;
+import no.mattikj.mkd.duckai.domain.ScenarioItem;
+import no.mattikj.mkd.duckai.domain.SparseVector;
+
+/**
+ * Benchmarks prompt vectorization and the best match search of the scenario index.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ScenarioIndexBenchmark {
+
+    private static final Tokenizer TOKENIZER = Tokenizer.words(Set.of(
+        "the", "is", "a", "an", "and", "or", "what", "how", "are"
+    ));
+    private static final int PROMPTS = 1_024;
+
+    @Param({"1000", "100000", "1000000"})
+    private int corpusSize;
+
+    private ScenarioIndex index;
+    private List<String> prompts;
+    private SparseVector[] vectors;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = new ScenarioIndex();
+        for (final Scenario scenario : SyntheticCorpus.scenarios(corpusSize)) {
+            index.add(new ScenarioItem(
+                scenario.question(),
+                scenario.answer(),
+                TOKENIZER.vectorizeForIndex(scenario.question(), index.dictionary())
+            ));
+        }
+        index.refreshStatistics();
+
+        prompts = SyntheticCorpus.prompts(PROMPTS);
+        vectors = prompts.stream().map(prompt -> TOKENIZER.vectorize(prompt, index.dictionary())).toArray(SparseVector[]::new);
+    }
+
+    @Benchmark
+    public SparseVector vectorize() {
+        return TOKENIZER.vectorize(prompts.get(nextPrompt()), index.dictionary());
+    }
+
+    @Benchmark
+    public ScenarioItem findBestMatch() {
+        return index.findBestMatch(vectors[nextPrompt()], ScoringMode.COSINE, 0.45);
+    }
+
+    @Benchmark
+    public ScenarioItem findBestMatchBm25() {
+        return index.findBestMatch(vectors[nextPrompt()], ScoringMode.BM25, 0.35);
+    }
+
+    private int nextPrompt() {
+        next = (next + 1) & (PROMPTS - 1);
+        return next;
+    }
+}
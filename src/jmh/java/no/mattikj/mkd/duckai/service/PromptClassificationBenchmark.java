@@ -0,0 +1,64 @@
+package no.mattikj.mkd.duckai.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import no.mattikj.mkd.duckai.benchmark.SyntheticCorpus;
+import no.mattikj.mkd.duckai.domain.WebSearchType;
+
+/**
+ * Benchmarks the per-prompt string handling that does not depend on the scenario corpus:
+ * classifying a prompt and sanitizing it into a Wikipedia title.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptClassificationBenchmark {
+
+    private static final int PROMPTS = 1_024;
+
+    private ScenarioResponderEngine engine;
+    private WebSearchEngine webSearchEngine;
+    private List<String> prompts;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new ScenarioResponderEngine(null, null, null, null);
+        webSearchEngine = new WebSearchEngine(null, null, null, null, null, null);
+        prompts = SyntheticCorpus.prompts(PROMPTS);
+    }
+
+    @Benchmark
+    public WebSearchType classifyPrompt() {
+        return engine.classifyPrompt(prompts.get(nextPrompt()));
+    }
+
+    @Benchmark
+    public String sanitizePromptForWiki() {
+        return webSearchEngine.sanitizePromptForWiki(prompts.get(nextPrompt()));
+    }
+
+    private int nextPrompt() {
+        next = (next + 1) & (PROMPTS - 1);
+        return next;
+    }
+}
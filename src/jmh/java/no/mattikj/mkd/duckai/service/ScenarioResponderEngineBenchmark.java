@@ -0,0 +1,132 @@
+package no.mattikj.mkd.duckai.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import no.mattikj.mkd.duckai.benchmark.SyntheticCorpus;
+import no.mattikj.mkd.duckai.cache.PromptResponseCache;
+import no.mattikj.mkd.duckai.domain.Scenario;
+import no.mattikj.mkd.duckai.domain.WebSearchType;
+import no.mattikj.mkd.duckai.dto.PromptResponse;
+import no.mattikj.mkd.duckai.metrics.DuckAiMetrics;
+
+/**
+ * Benchmarks {@link ScenarioResponderEngine#generateResponse} end to end, with the scenario store
+ * and the web search replaced by in-memory stubs.
+ * <p>
+ * The prompt response cache is disabled for the uncached benchmarks, so they measure
+ * tokenizing, matching and the web fallback on every call.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ScenarioResponderEngineBenchmark {
+
+    private static final int PROMPTS = 1_024;
+
+    @Param({"1000", "100000", "1000000"})
+    private int corpusSize;
+
+    private ScenarioResponderEngine engine;
+    private ScenarioResponderEngine cachingEngine;
+    private List<Scenario> scenarios;
+    private List<String> prompts;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scenarios = SyntheticCorpus.scenarios(corpusSize);
+        prompts = SyntheticCorpus.prompts(PROMPTS);
+
+        final DuckAiMetrics metrics = new DuckAiMetrics(new SimpleMeterRegistry());
+        engine = new ScenarioResponderEngine(
+            new StoredScenarios(scenarios), new StubWebSearchEngine(), new PromptResponseCache(0, 0, 0), metrics);
+        engine.init();
+        cachingEngine = new ScenarioResponderEngine(
+            new StoredScenarios(scenarios), new StubWebSearchEngine(), new PromptResponseCache(PROMPTS, 60_000, 60_000), metrics);
+        cachingEngine.init();
+    }
+
+    /**
+     * A stored scenario prompt, which matches locally.
+     */
+    @Benchmark
+    public PromptResponse generateResponseLocalMatch() {
+        return engine.generateResponse(scenarios.get(nextPrompt() % scenarios.size()).question());
+    }
+
+    /**
+     * A synthetic prompt, which mostly falls through to the stubbed web search.
+     */
+    @Benchmark
+    public PromptResponse generateResponse() {
+        return engine.generateResponse(prompts.get(nextPrompt()));
+    }
+
+    @Benchmark
+    public PromptResponse generateResponseCached() {
+        return cachingEngine.generateResponse(prompts.get(nextPrompt()));
+    }
+
+    private int nextPrompt() {
+        next = (next + 1) & (PROMPTS - 1);
+        return next;
+    }
+
+    private static final class StoredScenarios extends ScenarioService {
+        private final List<Scenario> scenarios;
+
+        private StoredScenarios(final List<Scenario> scenarios) {
+            super(null);
+            this.scenarios = scenarios;
+        }
+
+        @Override
+        public void forEachScenarioChangedAfter(final long lastVersion, final Consumer<Scenario> consumer) {
+            scenarios.stream().filter(scenario -> scenario.version() > lastVersion).forEach(consumer);
+        }
+    }
+
+    /**
+     * Answers every lookup at once, without any network, rate limiting or caching.
+     */
+    private static final class StubWebSearchEngine extends WebSearchEngine {
+
+        private StubWebSearchEngine() {
+            super(null, null, null, null, null, null);
+        }
+
+        @Override
+        public String searchInternetForResponse(final String prompt, final WebSearchType type) {
+            return "Summary of " + prompt;
+        }
+
+        @Override
+        public CompletableFuture<String> searchInternetForResponseAsync(final String prompt, final WebSearchType type) {
+            return CompletableFuture.completedFuture(searchInternetForResponse(prompt, type));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package no.mattikj.mkd.duckai;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * MKD DuckAI Application main class.
@@ -10,6 +11,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * @version 1.2.0
  */
 @SpringBootApplication
+@EnableScheduling
 public class MkdDuckAiApplication {
 
     public static void main(final String[] args) {
@@ -0,0 +1,138 @@
+package no.mattikj.mkd.duckai.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Size-bounded cache with least-recently-used eviction and a time to live per entry.
+ * <p>
+ * All operations hold a short lock and never call out to other code, so the cache is safe to
+ * use from any thread. Hit, miss and eviction counts are kept for monitoring.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final Lock lock = new ReentrantLock();
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ExpiringLruCache(final int maxEntries) {
+        this(maxEntries, System::nanoTime);
+    }
+
+    /**
+     * @param clock the time source in nanoseconds, replaceable in tests
+     */
+    public ExpiringLruCache(final int maxEntries, final LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached entry for the key, or {@code null} if there is none or it has expired.
+     * The returned entry may hold a {@code null} value.
+     */
+    public Entry<V> get(final K key) {
+        final long now = clock.getAsLong();
+        lock.lock();
+        try {
+            final Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAtNanos - now > 0) {
+                hits.incrementAndGet();
+                return entry;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+            misses.incrementAndGet();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Caches the value for the given time to live. Values with a time to live of zero or less are
+     * not cached. Expired entries are dropped before the least recently used ones are evicted.
+     */
+    public void put(final K key, final V value, final long ttlMillis) {
+        if (ttlMillis <= 0 || maxEntries <= 0) return;
+
+        final long now = clock.getAsLong();
+        lock.lock();
+        try {
+            entries.put(key, new Entry<>(value, now + ttlMillis * 1_000_000L));
+            if (entries.size() > maxEntries) {
+                entries.values().removeIf(entry -> entry.expiresAtNanos - now <= 0);
+            }
+            final Iterator<Entry<V>> eldest = entries.values().iterator();
+            while (entries.size() > maxEntries) {
+                eldest.next();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    public Map<String, Long> stats() {
+        return Map.of(
+            "size", (long) size(),
+            "hits", hitCount(),
+            "misses", missCount(),
+            "evictions", evictionCount()
+        );
+    }
+
+    /**
+     * A cached value, which may be {@code null} for cached negative results.
+     */
+    public record Entry<V>(V value, long expiresAtNanos) {
+    }
+}
@@ -0,0 +1,93 @@
+package no.mattikj.mkd.duckai.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import no.mattikj.mkd.duckai.domain.ResponseSourceType;
+import no.mattikj.mkd.duckai.dto.PromptResponse;
+import no.mattikj.mkd.duckai.index.PromptNormalizer;
+
+/**
+ * Cache of final responses, keyed on normalized prompt, so repeated prompts skip vectorizing,
+ * matching and the web lookup.
+ * <p>
+ * Every entry belongs to the generation of the scenario set it was computed from. Changing the
+ * scenario set starts a new generation, which makes all older entries unreachable at once. A
+ * response computed while the scenario set changed is stored under the generation it started
+ * from, so it is never served after the change.
+ * <p>
+ * Local answers only change with the scenario set, while answers from the internet have their
+ * own time to live.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Component
+public class PromptResponseCache {
+
+    private final ExpiringLruCache<Key, PromptResponse> cache;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final long localTtlMillis;
+    private final long internetTtlMillis;
+
+    public PromptResponseCache(
+        @Value("${duckai.prompt-cache.max-entries:10000}") final int maxEntries,
+        @Value("${duckai.prompt-cache.local-ttl-ms:86400000}") final long localTtlMillis,
+        @Value("${duckai.prompt-cache.internet-ttl-ms:3600000}") final long internetTtlMillis
+    ) {
+        this.cache = new ExpiringLruCache<>(maxEntries);
+        this.localTtlMillis = localTtlMillis;
+        this.internetTtlMillis = internetTtlMillis;
+    }
+
+    /**
+     * Returns the current generation. Read it before computing a response, and store the
+     * response under it.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Returns a copy of the cached response for the prompt in the given generation, or
+     * {@code null} if there is none.
+     */
+    public PromptResponse get(final long generation, final String prompt) {
+        final ExpiringLruCache.Entry<PromptResponse> entry = cache.get(new Key(generation, PromptNormalizer.normalize(prompt)));
+        if (entry == null) return null;
+
+        return new PromptResponse(entry.value().getReply(), entry.value().getSource());
+    }
+
+    public void put(final long generation, final String prompt, final PromptResponse response) {
+        final long ttlMillis = response.getSource() == ResponseSourceType.INTERNET ? internetTtlMillis : localTtlMillis;
+        cache.put(
+            new Key(generation, PromptNormalizer.normalize(prompt)),
+            new PromptResponse(response.getReply(), response.getSource()),
+            ttlMillis
+        );
+    }
+
+    /**
+     * Starts a new generation and drops all cached responses.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public Map<String, Long> stats() {
+        final Map<String, Long> stats = new LinkedHashMap<>(cache.stats());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private record Key(long generation, String prompt) {
+    }
+}
@@ -0,0 +1,60 @@
+package no.mattikj.mkd.duckai.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent calls with the same key.
+ * <p>
+ * The first caller for a key starts the call; every caller arriving while it is still running
+ * gets the same result instead of starting its own. Each caller gets its own copy of the
+ * future, so one caller timing out or cancelling does not affect the others.
+ *
+ * @param <K> the key type
+ * @param <V> the result type
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public CompletableFuture<V> execute(final K key, final Supplier<CompletableFuture<V>> call) {
+        final CompletableFuture<V> created = new CompletableFuture<>();
+        final CompletableFuture<V> running = inFlight.putIfAbsent(key, created);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return running.copy();
+        }
+
+        try {
+            call.get().whenComplete((value, error) -> {
+                inFlight.remove(key, created);
+                if (error != null) {
+                    created.completeExceptionally(error);
+                } else {
+                    created.complete(value);
+                }
+            });
+        } catch (final RuntimeException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created.copy();
+    }
+
+    /**
+     * Returns how many calls were served by a call already in flight.
+     */
+    public long coalescedCount() {
+        return coalesced.get();
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
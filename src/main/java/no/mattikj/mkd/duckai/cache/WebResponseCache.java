@@ -0,0 +1,157 @@
+package no.mattikj.mkd.duckai.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import no.mattikj.mkd.duckai.dao.WebCacheDAO;
+import no.mattikj.mkd.duckai.domain.WebSearchType;
+import no.mattikj.mkd.duckai.dto.WebCacheEntryDto;
+
+/**
+ * Two-tier cache for responses from external APIs, keyed on search type and sanitized prompt.
+ * <p>
+ * The first tier is an in-memory LRU cache. The optional second tier is the
+ * {@code duck.web_cache} table, so a restart does not cause a burst of refetches. Every search
+ * type has its own time to live, and empty results are cached with a shorter one. A failed
+ * fetch is not cached in either tier, so a timeout or an outage is never stored as an empty
+ * result. Concurrent misses for the same key are coalesced into a single fetch.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Component
+public class WebResponseCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WebResponseCache.class);
+
+    private final WebCacheDAO webCacheDAO;
+    private final ExpiringLruCache<Key, String> memory;
+    private final SingleFlight<Key, String> inFlight = new SingleFlight<>();
+    private final Map<WebSearchType, Long> ttlMillis = new EnumMap<>(WebSearchType.class);
+    private final long negativeTtlMillis;
+    private final boolean persistent;
+
+    public WebResponseCache(
+        final WebCacheDAO webCacheDAO,
+        @Value("${duckai.web-cache.max-entries:10000}") final int maxEntries,
+        @Value("${duckai.web-cache.wiki-ttl-ms:86400000}") final long wikiTtlMillis,
+        @Value("${duckai.web-cache.book-ttl-ms:86400000}") final long bookTtlMillis,
+        @Value("${duckai.web-cache.joke-ttl-ms:0}") final long jokeTtlMillis,
+        @Value("${duckai.web-cache.negative-ttl-ms:60000}") final long negativeTtlMillis,
+        @Value("${duckai.web-cache.persistent:false}") final boolean persistent
+    ) {
+        this.webCacheDAO = webCacheDAO;
+        this.memory = new ExpiringLruCache<>(maxEntries);
+        this.ttlMillis.put(WebSearchType.WIKI, wikiTtlMillis);
+        this.ttlMillis.put(WebSearchType.BOOK, bookTtlMillis);
+        this.ttlMillis.put(WebSearchType.JOKE, jokeTtlMillis);
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.persistent = persistent;
+    }
+
+    /**
+     * Returns the cached response for the search type and query, or fetches and caches it.
+     * Search types without a time to live are always fetched.
+     */
+    public CompletableFuture<String> get(
+        final WebSearchType type,
+        final String query,
+        final Supplier<CompletableFuture<String>> fetcher
+    ) {
+        final long ttl = ttlMillis.getOrDefault(type, 0L);
+        if (ttl <= 0) return fetcher.get();
+
+        final Key key = new Key(type, query);
+        final ExpiringLruCache.Entry<String> cached = memory.get(key);
+        if (cached != null) return CompletableFuture.completedFuture(cached.value());
+
+        return inFlight.execute(key, () -> load(key, ttl, fetcher));
+    }
+
+    /**
+     * Loads a response missing from memory, from the database tier if possible.
+     * Only one load per key runs at a time; concurrent callers share its result.
+     */
+    private CompletableFuture<String> load(
+        final Key key,
+        final long ttl,
+        final Supplier<CompletableFuture<String>> fetcher
+    ) {
+        final WebCacheEntryDto stored = readPersistent(key);
+        if (stored != null) {
+            final long remaining = Duration.between(OffsetDateTime.now(), stored.getExpiresAt()).toMillis();
+            memory.put(key, stored.getResponse(), remaining);
+            return CompletableFuture.completedFuture(stored.getResponse());
+        }
+
+        return fetcher.get().thenApply(response -> {
+            final boolean negative = response == null || response.isBlank();
+            final long entryTtl = negative ? negativeTtlMillis : ttl;
+            memory.put(key, negative ? null : response, entryTtl);
+            writePersistent(key, negative ? null : response, entryTtl);
+            return negative ? null : response;
+        });
+    }
+
+    public ExpiringLruCache<Key, String> memoryTier() {
+        return memory;
+    }
+
+    /**
+     * Returns how many lookups were served by an identical lookup already in flight.
+     */
+    public long coalescedCount() {
+        return inFlight.coalescedCount();
+    }
+
+    @Scheduled(fixedRateString = "${duckai.web-cache.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        if (!persistent) return;
+
+        try {
+            webCacheDAO.deleteExpiredEntries();
+        } catch (final DataAccessException e) {
+            LOG.warn("Could not purge expired web cache entries: {}", e.getMessage());
+        }
+    }
+
+    private WebCacheEntryDto readPersistent(final Key key) {
+        if (!persistent) return null;
+
+        try {
+            return webCacheDAO.getEntry(key.type().name(), key.query());
+        } catch (final DataAccessException e) {
+            LOG.warn("Could not read web cache entry: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writePersistent(final Key key, final String response, final long ttl) {
+        if (!persistent || ttl <= 0) return;
+
+        try {
+            webCacheDAO.saveEntry(new WebCacheEntryDto(
+                key.type().name(),
+                key.query(),
+                response,
+                OffsetDateTime.now().plusNanos(ttl * 1_000_000L)
+            ));
+        } catch (final DataAccessException e) {
+            LOG.warn("Could not write web cache entry: {}", e.getMessage());
+        }
+    }
+
+    public record Key(WebSearchType type, String query) {
+    }
+}
@@ -0,0 +1,44 @@
+package no.mattikj.mkd.duckai.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Execution mode configuration for outbound calls.
+ * <p>
+ * With {@code spring.threads.virtual.enabled=true}, Spring Boot runs every request on its own
+ * virtual thread, and so does this configuration for every outbound call. A request waiting on
+ * an external API then parks its virtual thread instead of holding one of the Tomcat worker
+ * threads, so the number of concurrent requests is no longer capped by
+ * {@code server.tomcat.threads.max}. Both sides read the same property, so they cannot disagree.
+ * By default the regular Tomcat thread pool is kept.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Configuration
+public class ExecutionConfig {
+
+    /**
+     * Executor for the outbound HTTP client, which runs response handling on it.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService outboundExecutor(
+        @Value("${spring.threads.virtual.enabled:false}") final boolean virtualThreads
+    ) {
+        if (virtualThreads) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+
+        final ThreadFactory threadFactory = Thread.ofPlatform()
+            .name("duckai-http-", 0)
+            .daemon(true)
+            .factory();
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+}
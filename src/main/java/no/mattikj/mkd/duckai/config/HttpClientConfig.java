@@ -0,0 +1,36 @@
+package no.mattikj.mkd.duckai.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * HTTP client configuration for outbound API requests.
+ * <p>
+ * One client is shared by all outbound calls, so connections are kept alive and reused,
+ * and HTTP/2 is used where the server supports it. The client runs on the outbound executor
+ * of the configured execution mode.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${duckai.http.connect-timeout}")
+    private int connectTimeout;
+
+    @Bean
+    public HttpClient httpClient(final ExecutorService outboundExecutor) {
+        return HttpClient.newBuilder()
+            .executor(outboundExecutor)
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(connectTimeout))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    }
+}
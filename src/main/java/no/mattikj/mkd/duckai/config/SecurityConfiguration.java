@@ -1,16 +1,28 @@
 package no.mattikj.mkd.duckai.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 
 /**
  * Security Configuration class.
+ * <p>
+ * Prompts are answered anonymously. Bulk imports and operational endpoints that are costly or
+ * change behaviour require HTTP Basic authentication as the admin user configured through
+ * {@code duckai.admin.username} and {@code duckai.admin.password}. Without a password there is
+ * no admin user, and those endpoints refuse every caller.
  *
  * @author Matti Kjellstadli
  * @version 1.1.0
@@ -25,14 +37,35 @@ public class SecurityConfiguration {
         return authenticationConfiguration.getAuthenticationManager();
     }
 
+    /**
+     * The password is stored with its encoding id, such as {@code {bcrypt}...} or {@code {noop}...}.
+     */
+    @Bean
+    public UserDetailsService adminUsers(
+        @Value("${duckai.admin.username:admin}") final String username,
+        @Value("${duckai.admin.password:}") final String password
+    ) {
+        if (password.isBlank()) return new InMemoryUserDetailsManager();
+
+        return new InMemoryUserDetailsManager(User.withUsername(username)
+            .password(password)
+            .roles("ADMIN")
+            .build());
+    }
+
     @Bean
     public SecurityFilterChain securityFilterChain(final HttpSecurity http) throws Exception {
         http
             .csrf(AbstractHttpConfigurer::disable)
             .cors(cors -> {
             })
-            .authorizeHttpRequests(auth -> auth.anyRequest().permitAll())
-            .httpBasic(AbstractHttpConfigurer::disable)
+            .authorizeHttpRequests(auth -> auth
+                .requestMatchers(HttpMethod.GET, "/api/actuator/lsh-report").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.PUT, "/api/actuator/scoring-mode").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.POST, "/api/duckai/learn/bulk", "/api/duckai/learn/stream").hasRole("ADMIN")
+                .anyRequest().permitAll())
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .httpBasic(Customizer.withDefaults())
             .formLogin(AbstractHttpConfigurer::disable);
 
         return http.build();
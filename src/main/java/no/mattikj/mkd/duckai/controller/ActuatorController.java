@@ -1,27 +1,62 @@
 package no.mattikj.mkd.duckai.controller;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import no.mattikj.mkd.duckai.cache.PromptResponseCache;
+import no.mattikj.mkd.duckai.cache.WebResponseCache;
+import no.mattikj.mkd.duckai.index.LshRecallReport;
+import no.mattikj.mkd.duckai.index.ScoringMode;
+import no.mattikj.mkd.duckai.service.ScenarioResponderEngine;
+import org.springframework.boot.actuate.health.HealthComponent;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
- * Actuator Controller class. Provides basic health check endpoint.
+ * Actuator Controller class. Provides readiness, version and statistics endpoints,
+ * switches the scoring mode at runtime, and reports MinHash recall against exact matching.
  *
  * @author Matti Kjellstadli
  * @version 1.2.0
  */
 @RestController
 @RequestMapping("/api/actuator")
+@RequiredArgsConstructor
 public class ActuatorController {
 
+    /**
+     * Every sample runs an exact scan of all scenarios, for each band setting.
+     */
+    private static final int MAX_LSH_REPORT_SAMPLES = 500;
+
+    private final WebResponseCache webResponseCache;
+    private final PromptResponseCache promptResponseCache;
+    private final ScenarioResponderEngine scenarioResponderEngine;
+    private final HealthEndpoint healthEndpoint;
+
+    /**
+     * Reports the readiness group of {@code /actuator/health}, answering 503 until the node
+     * can serve prompts. Only the status is returned; the details are under
+     * {@code /actuator/health}, for the admin user.
+     */
     @GetMapping("/health")
     public ResponseEntity<Map<String, String>> health() {
+        final HealthComponent readiness = healthEndpoint.healthForPath("readiness");
+        final Status readinessStatus = readiness != null ? readiness.getStatus() : Status.UNKNOWN;
+
         final Map<String, String> status = new HashMap<>();
-        status.put("status", "UP");
-        return ResponseEntity.ok(status);
+        status.put("status", readinessStatus.getCode());
+        return ResponseEntity.status(Status.UP.equals(readinessStatus) ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+            .body(status);
     }
 
     @GetMapping("/version")
@@ -34,4 +69,40 @@ public class ActuatorController {
                         : "unknown");
         return ResponseEntity.ok(versionInfo);
     }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("webCache", webResponseCache.memoryTier().stats());
+        stats.put("webCoalescedCalls", webResponseCache.coalescedCount());
+        stats.put("promptCache", promptResponseCache.stats());
+        return ResponseEntity.ok(stats);
+    }
+
+    @GetMapping("/scoring-mode")
+    public ResponseEntity<Map<String, String>> scoringMode() {
+        final Map<String, String> mode = new HashMap<>();
+        mode.put("mode", scenarioResponderEngine.getScoringMode().name());
+        return ResponseEntity.ok(mode);
+    }
+
+    /**
+     * Switches the ranking of every prompt, so it requires the admin role.
+     */
+    @PutMapping("/scoring-mode")
+    public ResponseEntity<Map<String, String>> scoringMode(@RequestParam("mode") final ScoringMode mode) {
+        scenarioResponderEngine.setScoringMode(mode);
+        return scoringMode();
+    }
+
+    /**
+     * Reports MinHash recall and latency against an exact scan, for typo'd stored prompts. Each
+     * call builds a MinHash index per band setting, so it requires the admin role.
+     */
+    @GetMapping("/lsh-report")
+    public ResponseEntity<List<LshRecallReport.Row>> lshReport(
+        @RequestParam(value = "samples", defaultValue = "200") final int samples
+    ) {
+        return ResponseEntity.ok(scenarioResponderEngine.lshReport(Math.max(0, Math.min(samples, MAX_LSH_REPORT_SAMPLES))));
+    }
 }
@@ -1,18 +1,31 @@
 package no.mattikj.mkd.duckai.controller;
 
 import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 import lombok.RequiredArgsConstructor;
 import no.mattikj.mkd.duckai.domain.ResponseSourceType;
+import no.mattikj.mkd.duckai.dto.BulkLearnResponse;
+import no.mattikj.mkd.duckai.dto.ImportProgress;
 import no.mattikj.mkd.duckai.dto.PromptLearnRequest;
 import no.mattikj.mkd.duckai.dto.PromptRequest;
 import no.mattikj.mkd.duckai.dto.PromptResponse;
+import no.mattikj.mkd.duckai.dto.ScenarioSuggestion;
+import no.mattikj.mkd.duckai.service.ScenarioImportService;
 import no.mattikj.mkd.duckai.service.ScenarioResponderEngine;
 
 /**
@@ -27,15 +40,68 @@ import no.mattikj.mkd.duckai.service.ScenarioResponderEngine;
 public class DuckAIController {
 
     private final ScenarioResponderEngine scenarioResponderEngine;
+    private final ScenarioImportService scenarioImportService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public PromptResponse handleDuckAIRequest(@RequestBody final PromptRequest request) {
         return scenarioResponderEngine.generateResponse(request.getPrompt());
     }
 
+    /**
+     * Returns the learned scenarios closest to the prompt, as "did you mean" alternatives.
+     */
+    @GetMapping("/suggestions")
+    public List<ScenarioSuggestion> handleDuckAISuggestions(
+        @RequestParam final String prompt,
+        @RequestParam(defaultValue = "5") final int limit
+    ) {
+        return scenarioResponderEngine.suggestScenarios(prompt, limit);
+    }
+
     @PostMapping("/learn")
     public PromptResponse handleDuckAILearning(@RequestBody final List<PromptLearnRequest> promptLearnRequests) {
         final int successCount = scenarioResponderEngine.learnScenarios(promptLearnRequests);
         return new PromptResponse("Successfully learned " + successCount + " scenarios.", ResponseSourceType.LOCAL);
     }
-}
\ No newline at end of file
+
+    @PostMapping("/learn/bulk")
+    public BulkLearnResponse handleDuckAIBulkLearning(@RequestBody final List<PromptLearnRequest> promptLearnRequests) {
+        return new BulkLearnResponse(scenarioResponderEngine.learnScenariosInBulk(promptLearnRequests));
+    }
+
+    /**
+     * Imports newline-delimited JSON, or a JSON array, of scenarios without buffering the body.
+     */
+    @PostMapping(
+        value = "/learn/stream",
+        consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ImportProgress handleDuckAIStreamLearning(final InputStream body) {
+        return scenarioImportService.importScenarios(body, progress -> { });
+    }
+
+    /**
+     * Imports like {@link #handleDuckAIStreamLearning}, and streams a progress line back after
+     * every stored batch.
+     */
+    @PostMapping(
+        value = "/learn/stream",
+        consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+        produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    public StreamingResponseBody handleDuckAIStreamLearningWithProgress(final InputStream body) {
+        return output -> scenarioImportService.importScenarios(body, progress -> writeLine(output, progress));
+    }
+
+    private void writeLine(final OutputStream output, final ImportProgress progress) {
+        try {
+            output.write(objectMapper.writeValueAsBytes(progress));
+            output.write('\n');
+            output.flush();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
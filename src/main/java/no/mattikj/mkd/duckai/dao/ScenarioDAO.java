@@ -1,10 +1,20 @@
 package no.mattikj.mkd.duckai.dao;
 
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import no.mattikj.mkd.duckai.dto.ScenarioDto;
 import no.mattikj.mkd.duckai.mapper.ScenarioRowMapper;
@@ -18,18 +28,59 @@ import no.mattikj.mkd.duckai.mapper.ScenarioRowMapper;
 @Repository
 public class ScenarioDAO {
 
+    // An update takes a new version, so reloads that only read newer versions see changed answers
+    private static final String UPSERT_SQL = """
+        insert into duck.scenario (prompt, answer)
+        values (:prompt, :answer)
+        on conflict (prompt_key) do update
+        set prompt = excluded.prompt,
+            answer = excluded.answer,
+            version = nextval('duck.scenario_version_seq')
+        """;
+    private static final String[] KEY_COLUMNS = {"scenario_db_id", "version"};
+
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
     public ScenarioDAO(final NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
         this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
     }
 
-    public List<ScenarioDto> getAllScenarios() {
+    /**
+     * Streams all scenarios inserted or updated after the given version to the consumer, ordered
+     * by version.
+     * <p>
+     * Rows are read in pages of {@code pageSize} using the last seen version as the key of the
+     * next page. The driver buffers one page at a time, so memory is bounded by the page size, no
+     * matter how large the table is.
+     */
+    public void forEachScenarioChangedAfter(
+        final long lastVersion,
+        final int pageSize,
+        final Consumer<ScenarioDto> consumer
+    ) {
         final String sql = """
             select s.*
             from duck.scenario s
+            where s.version > :lastVersion
+            order by s.version
+            limit :pageSize
             """;
-        return namedParameterJdbcTemplate.query(sql, new ScenarioRowMapper());
+        final ScenarioRowMapper rowMapper = new ScenarioRowMapper();
+        final AtomicLong cursor = new AtomicLong(lastVersion);
+        final AtomicInteger rowsInPage = new AtomicInteger();
+
+        do {
+            final HashMap<String, Long> params = new HashMap<>();
+            params.put("lastVersion", cursor.get());
+            params.put("pageSize", (long) pageSize);
+
+            rowsInPage.set(0);
+            namedParameterJdbcTemplate.query(sql, params, (RowCallbackHandler) rs -> {
+                final ScenarioDto scenario = rowMapper.mapRow(rs, rowsInPage.getAndIncrement());
+                cursor.set(scenario.getVersion());
+                consumer.accept(scenario);
+            });
+        } while (rowsInPage.get() == pageSize);
     }
 
     public ScenarioDto getScenario(final Long scenarioId) {
@@ -43,14 +94,59 @@ public class ScenarioDAO {
         return namedParameterJdbcTemplate.queryForObject(sql, params, new ScenarioRowMapper());
     }
 
-    public int createScenario(final ScenarioDto scenario) {
-        final String sql = """
-            insert into duck.scenario (prompt, answer)
-            values (:prompt, :answer)
-            """;
+    /**
+     * Inserts the scenario, or updates the answer of the stored scenario with the same
+     * normalized prompt, and sets the id and new version of the stored row on it.
+     *
+     * @return the number of inserted or updated rows
+     */
+    public int upsertScenario(final ScenarioDto scenario) {
         final HashMap<String, String> params = new HashMap<>();
         params.put("prompt", scenario.getPrompt());
         params.put("answer", scenario.getAnswer());
-        return namedParameterJdbcTemplate.update(sql, params);
+
+        final KeyHolder keyHolder = new GeneratedKeyHolder();
+        final int rows = namedParameterJdbcTemplate.update(
+            UPSERT_SQL, new MapSqlParameterSource(params), keyHolder, KEY_COLUMNS);
+
+        final Map<String, Object> keys = keyHolder.getKeys();
+        if (keys != null) {
+            setKeys(scenario, keys);
+        }
+        return rows;
+    }
+
+    /**
+     * Upserts the scenarios as one JDBC batch in a single transaction, and sets the ids and
+     * versions of the stored rows on them.
+     *
+     * @return the update counts of the batch
+     */
+    @Transactional
+    public int[] upsertScenarios(final List<ScenarioDto> scenarios) {
+        final SqlParameterSource[] batch = scenarios.stream()
+            .map(scenario -> new MapSqlParameterSource()
+                .addValue("prompt", scenario.getPrompt())
+                .addValue("answer", scenario.getAnswer()))
+            .toArray(SqlParameterSource[]::new);
+
+        final KeyHolder keyHolder = new GeneratedKeyHolder();
+        final int[] rows = namedParameterJdbcTemplate.batchUpdate(
+            UPSERT_SQL, batch, keyHolder, KEY_COLUMNS);
+
+        final List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < keys.size() && i < scenarios.size(); i++) {
+            setKeys(scenarios.get(i), keys.get(i));
+        }
+        return rows;
+    }
+
+    private static void setKeys(final ScenarioDto scenario, final Map<String, Object> keys) {
+        if (keys.get("scenario_db_id") instanceof final Number id) {
+            scenario.setScenarioId(String.valueOf(id.longValue()));
+        }
+        if (keys.get("version") instanceof final Number version) {
+            scenario.setVersion(version.longValue());
+        }
     }
 }
@@ -0,0 +1,69 @@
+package no.mattikj.mkd.duckai.dao;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+import no.mattikj.mkd.duckai.dto.WebCacheEntryDto;
+import no.mattikj.mkd.duckai.mapper.WebCacheEntryRowMapper;
+
+/**
+ * DAO class for cached external API responses.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Repository
+public class WebCacheDAO {
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public WebCacheDAO(final NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    /**
+     * Returns the cached entry for the search type and query, or {@code null} if there is no
+     * entry that has not expired yet.
+     */
+    public WebCacheEntryDto getEntry(final String searchType, final String query) {
+        final String sql = """
+            select c.*
+            from duck.web_cache c
+            where c.search_type = :searchType
+              and c.query = :query
+              and c.expires_at > now()
+            """;
+        final MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("searchType", searchType)
+            .addValue("query", query);
+        final List<WebCacheEntryDto> entries =
+            namedParameterJdbcTemplate.query(sql, params, new WebCacheEntryRowMapper());
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+
+    public int saveEntry(final WebCacheEntryDto entry) {
+        final String sql = """
+            insert into duck.web_cache (search_type, query, response, expires_at)
+            values (:searchType, :query, :response, :expiresAt)
+            on conflict (search_type, query)
+            do update set response = excluded.response, expires_at = excluded.expires_at
+            """;
+        final MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("searchType", entry.getSearchType())
+            .addValue("query", entry.getQuery())
+            .addValue("response", entry.getResponse())
+            .addValue("expiresAt", entry.getExpiresAt());
+        return namedParameterJdbcTemplate.update(sql, params);
+    }
+
+    public int deleteExpiredEntries() {
+        final String sql = """
+            delete from duck.web_cache
+            where expires_at <= now()
+            """;
+        return namedParameterJdbcTemplate.update(sql, new MapSqlParameterSource());
+    }
+}
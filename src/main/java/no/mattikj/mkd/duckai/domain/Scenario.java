@@ -2,9 +2,15 @@ package no.mattikj.mkd.duckai.domain;
 
 /**
  * Domain record representing a scenario with a question and an answer.
+ * The scenario id and version are {@code null} for scenarios that are not stored in the
+ * database. The version is taken from a sequence whenever the row is inserted or updated.
  *
  * @author Matti Kjellstadli
- * @version 1.1.0
+ * @version 1.2.0
  */
-public record Scenario(String question, String answer) {
-}
\ No newline at end of file
+public record Scenario(Long scenarioId, Long version, String question, String answer) {
+
+    public Scenario(final String question, final String answer) {
+        this(null, null, question, answer);
+    }
+}
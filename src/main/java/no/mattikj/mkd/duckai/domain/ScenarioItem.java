@@ -1,16 +1,28 @@
 package no.mattikj.mkd.duckai.domain;
 
-import java.util.Map;
-
 /**
  * Domain record representing a ScenarioItem.
+ * <p>
+ * The answer may be held outside the heap; it is only decoded by {@link #response()}, so that
+ * is best called once the answer is actually returned.
  *
  * @author Matti Kjellstadli
  * @version 1.2.0
  */
 public record ScenarioItem(
     String prompt,
-    String response,
-    Map<String, Integer> vector
+    StoredText answer,
+    SparseVector vector
 ) {
-}
\ No newline at end of file
+
+    public ScenarioItem(final String prompt, final String response, final SparseVector vector) {
+        this(prompt, StoredText.of(response), vector);
+    }
+
+    /**
+     * Returns the answer, decoding it if it is held outside the heap.
+     */
+    public String response() {
+        return answer.text();
+    }
+}
@@ -0,0 +1,13 @@
+package no.mattikj.mkd.duckai.domain;
+
+/**
+ * Domain record representing a ScenarioMatch, a scenario and its similarity score for a prompt.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public record ScenarioMatch(
+    ScenarioItem item,
+    double score
+) {
+}
@@ -0,0 +1,102 @@
+package no.mattikj.mkd.duckai.domain;
+
+import java.util.Arrays;
+
+/**
+ * Domain record representing a sparse term vector.
+ * <p>
+ * Term ids are sorted ascending and unique, with the weight of each term at the same position.
+ * The L2 norm and the token count are computed once when the vector is built. Both may include
+ * terms that are not part of {@code terms}, such as prompt tokens unknown to the term
+ * dictionary, since those can never match anything but still count towards the length of the
+ * vector.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public record SparseVector(
+    int[] terms,
+    float[] weights,
+    double norm,
+    int tokenCount
+) {
+
+    public static final SparseVector EMPTY = new SparseVector(new int[0], new float[0], 0.0, 0);
+
+    /**
+     * Builds a vector from the first {@code length} term ids, using the number of occurrences of
+     * each id as its weight. Negative ids are counted in the norm and token count, but left out of
+     * the vector.
+     */
+    public static SparseVector of(final int[] termIds, final int length) {
+        if (length == 0) return EMPTY;
+
+        final int[] sorted = Arrays.copyOf(termIds, length);
+        Arrays.sort(sorted);
+
+        int distinct = 0;
+        for (int i = 0; i < length; i++) {
+            if (sorted[i] >= 0 && (i == 0 || sorted[i] != sorted[i - 1])) {
+                distinct++;
+            }
+        }
+
+        final int[] terms = new int[distinct];
+        final float[] weights = new float[distinct];
+        double norm = 0.0;
+        int position = -1;
+        int count = 0;
+
+        for (int i = 0; i < length; i++) {
+            count++;
+            final boolean last = i == length - 1 || sorted[i + 1] != sorted[i];
+            if (!last) continue;
+
+            norm += (double) count * count;
+            if (sorted[i] >= 0) {
+                position++;
+                terms[position] = sorted[i];
+                weights[position] = count;
+            }
+            count = 0;
+        }
+
+        return new SparseVector(terms, weights, Math.sqrt(norm), length);
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    /**
+     * Computes the dot product with another vector by merging the two sorted term arrays.
+     */
+    public double dot(final SparseVector other) {
+        final int[] otherTerms = other.terms;
+        final float[] otherWeights = other.weights;
+
+        double dot = 0.0;
+        int i = 0;
+        int j = 0;
+        while (i < terms.length && j < otherTerms.length) {
+            final int a = terms[i];
+            final int b = otherTerms[j];
+            if (a == b) {
+                dot += (double) weights[i] * otherWeights[j];
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return dot;
+    }
+
+    public double cosineSimilarity(final SparseVector other) {
+        if (norm == 0 || other.norm == 0) return 0.0;
+
+        return dot(other) / (norm * other.norm);
+    }
+}
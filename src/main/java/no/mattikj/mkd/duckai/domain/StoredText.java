@@ -0,0 +1,39 @@
+package no.mattikj.mkd.duckai.domain;
+
+/**
+ * Text held by the scenario index, either as a heap string or encoded outside the heap.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public interface StoredText {
+
+    /**
+     * Returns the text, decoding it first if it is not held as a string.
+     */
+    String text();
+
+    /**
+     * Returns a rough estimate of the heap retained by this text, in bytes.
+     */
+    long heapBytes();
+
+    /**
+     * Returns text held as a heap string.
+     */
+    static StoredText of(final String value) {
+        return new OnHeap(value);
+    }
+
+    record OnHeap(String text) implements StoredText {
+
+        /**
+         * Assumes compressed references, and one byte per character as for compact Latin-1
+         * strings: this wrapper and the string with its array.
+         */
+        @Override
+        public long heapBytes() {
+            return text == null ? 16L : 16L + 40L + text.length();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package no.mattikj.mkd.duckai.domain;
+
+/**
+ * External APIs called by the web search engine. The key is used in property names,
+ * e.g. {@code duckai.rate-limit.wikipedia.interval-ms}.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public enum Upstream {
+    WIKIPEDIA("wikipedia"),
+    JOKE_API("joke"),
+    OPEN_LIBRARY("openlibrary");
+
+    private final String key;
+
+    Upstream(final String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+}
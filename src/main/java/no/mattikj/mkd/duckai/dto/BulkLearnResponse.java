@@ -0,0 +1,29 @@
+package no.mattikj.mkd.duckai.dto;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * DTO representing the response to a bulk learning request, with the outcome of every item.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Setter
+@Getter
+public class BulkLearnResponse {
+    private int learned;
+    private int failed;
+    private List<LearnItemResult> results;
+
+    public BulkLearnResponse() {
+    }
+
+    public BulkLearnResponse(final List<LearnItemResult> results) {
+        this.results = results;
+        this.learned = (int) results.stream().filter(LearnItemResult::isLearned).count();
+        this.failed = results.size() - learned;
+    }
+}
@@ -0,0 +1,37 @@
+package no.mattikj.mkd.duckai.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * DTO representing the progress of a streaming scenario import.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Setter
+@Getter
+public class ImportProgress {
+    private long received;
+    private long learned;
+    private long failed;
+    private boolean finished;
+    private String error;
+
+    public ImportProgress() {
+    }
+
+    public ImportProgress(
+        final long received,
+        final long learned,
+        final long failed,
+        final boolean finished,
+        final String error
+    ) {
+        this.received = received;
+        this.learned = learned;
+        this.failed = failed;
+        this.finished = finished;
+        this.error = error;
+    }
+}
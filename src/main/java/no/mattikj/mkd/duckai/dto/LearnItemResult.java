@@ -0,0 +1,37 @@
+package no.mattikj.mkd.duckai.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * DTO representing the outcome of learning a single scenario in a bulk learning request.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Setter
+@Getter
+public class LearnItemResult {
+    private int index;
+    private boolean learned;
+    private Long scenarioId;
+    private String error;
+
+    public LearnItemResult() {
+    }
+
+    public LearnItemResult(final int index, final boolean learned, final Long scenarioId, final String error) {
+        this.index = index;
+        this.learned = learned;
+        this.scenarioId = scenarioId;
+        this.error = error;
+    }
+
+    public static LearnItemResult learned(final int index, final Long scenarioId) {
+        return new LearnItemResult(index, true, scenarioId, null);
+    }
+
+    public static LearnItemResult failed(final int index, final String error) {
+        return new LearnItemResult(index, false, null, error);
+    }
+}
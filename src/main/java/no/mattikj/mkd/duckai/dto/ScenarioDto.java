@@ -15,6 +15,7 @@ public class ScenarioDto {
     private String scenarioId;
     private String prompt;
     private String answer;
+    private Long version;
 
     public ScenarioDto() {
     }
@@ -0,0 +1,25 @@
+package no.mattikj.mkd.duckai.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * DTO representing a learned scenario suggested as an alternative to a prompt.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Setter
+@Getter
+public class ScenarioSuggestion {
+    private String prompt;
+    private double score;
+
+    public ScenarioSuggestion() {
+    }
+
+    public ScenarioSuggestion(final String prompt, final double score) {
+        this.prompt = prompt;
+        this.score = score;
+    }
+}
@@ -0,0 +1,36 @@
+package no.mattikj.mkd.duckai.dto;
+
+import java.time.OffsetDateTime;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * DTO representing a cached response from an external API.
+ * A {@code null} response is a cached negative result.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Setter
+@Getter
+public class WebCacheEntryDto {
+    private String searchType;
+    private String query;
+    private String response;
+    private OffsetDateTime expiresAt;
+
+    public WebCacheEntryDto() {
+    }
+
+    public WebCacheEntryDto(
+        final String searchType,
+        final String query,
+        final String response,
+        final OffsetDateTime expiresAt
+    ) {
+        this.searchType = searchType;
+        this.query = query;
+        this.response = response;
+        this.expiresAt = expiresAt;
+    }
+}
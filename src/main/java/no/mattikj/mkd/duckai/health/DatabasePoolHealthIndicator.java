@@ -0,0 +1,52 @@
+package no.mattikj.mkd.duckai.health;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import javax.sql.DataSource;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Reports how saturated the database connection pool is. Saturation alone does not take the
+ * node out of service; the details show when requests queue up for a connection.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Component
+@RequiredArgsConstructor
+public class DatabasePoolHealthIndicator implements HealthIndicator {
+
+    private final DataSource dataSource;
+
+    @Override
+    public Health health() {
+        final HikariDataSource hikari = hikari();
+        final HikariPoolMXBean pool = hikari != null ? hikari.getHikariPoolMXBean() : null;
+        if (pool == null) return Health.unknown().build();
+
+        final int active = pool.getActiveConnections();
+        final int maximum = hikari.getMaximumPoolSize();
+        return Health.up()
+            .withDetail("active", active)
+            .withDetail("idle", pool.getIdleConnections())
+            .withDetail("maximum", maximum)
+            .withDetail("pending", pool.getThreadsAwaitingConnection())
+            .withDetail("saturation", maximum > 0 ? (double) active / maximum : 0.0)
+            .build();
+    }
+
+    private HikariDataSource hikari() {
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (final SQLException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package no.mattikj.mkd.duckai.health;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import no.mattikj.mkd.duckai.service.ScenarioResponderEngine;
+
+/**
+ * Out of service until the first scenario index is fully built, so a node answering every
+ * prompt from an empty index gets no traffic. Part of the readiness group.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Component
+@RequiredArgsConstructor
+public class ScenarioIndexHealthIndicator implements HealthIndicator {
+
+    private final ScenarioResponderEngine engine;
+
+    @Override
+    public Health health() {
+        final Health.Builder builder = engine.isIndexReady() ? Health.up() : Health.outOfService();
+        builder.withDetail("scenarios", engine.scenarioCount());
+
+        final long completedAt = engine.lastReloadCompletedAtMillis();
+        if (completedAt >= 0) {
+            builder.withDetail("lastReloadDurationMs", engine.lastReloadDurationMillis());
+            builder.withDetail("lastReloadAgeMs", System.currentTimeMillis() - completedAt);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,50 @@
+package no.mattikj.mkd.duckai.health;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.RequiredArgsConstructor;
+import no.mattikj.mkd.duckai.domain.Upstream;
+import no.mattikj.mkd.duckai.resilience.CircuitBreaker;
+import no.mattikj.mkd.duckai.resilience.UpstreamStatus;
+import no.mattikj.mkd.duckai.service.WebSearchEngine;
+
+/**
+ * Reports the circuit state of every external API and the latest call to it. Down only when
+ * every one of them has an open circuit or a failing latest call. Not part of the readiness
+ * group: an outage of an external API hits every node alike, and local scenarios are still
+ * answered.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Component
+@RequiredArgsConstructor
+public class UpstreamHealthIndicator implements HealthIndicator {
+
+    private final WebSearchEngine webSearchEngine;
+
+    @Override
+    public Health health() {
+        final long now = System.currentTimeMillis();
+        boolean anyAvailable = false;
+        final Map<String, Object> details = new LinkedHashMap<>();
+        for (final Map.Entry<Upstream, UpstreamStatus> entry : webSearchEngine.upstreamStatuses().entrySet()) {
+            final UpstreamStatus status = entry.getValue();
+            final CircuitBreaker.State circuit = webSearchEngine.circuitState(entry.getKey());
+            anyAvailable |= circuit != CircuitBreaker.State.OPEN && status.consecutiveFailures() == 0;
+
+            final Map<String, Object> upstream = new LinkedHashMap<>();
+            upstream.put("circuit", circuit.name());
+            upstream.put("lastOutcome", status.lastOutcome() != null ? status.lastOutcome().name() : "NONE");
+            upstream.put("lastCallAgeMs", status.lastCallAtMillis() >= 0 ? now - status.lastCallAtMillis() : -1);
+            upstream.put("consecutiveFailures", status.consecutiveFailures());
+            details.put(entry.getKey().key(), upstream);
+        }
+        return (anyAvailable ? Health.up() : Health.down()).withDetails(details).build();
+    }
+}
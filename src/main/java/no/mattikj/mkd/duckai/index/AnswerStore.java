@@ -0,0 +1,122 @@
+package no.mattikj.mkd.duckai.index;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import no.mattikj.mkd.duckai.domain.StoredText;
+
+/**
+ * Stores the answers of a scenario index, either as heap strings or UTF-8 encoded in direct
+ * buffers outside the heap.
+ * <p>
+ * Off-heap answers are appended to direct buffers of {@link #CHUNK_BYTES} each, and an answer
+ * larger than that gets a buffer of its own. The heap then only holds, per answer, a small
+ * reference with its buffer, offset and length, so long answers no longer fill the old
+ * generation or have to be traced by every full GC. Each reference keeps its buffer reachable,
+ * so a buffer is released by the GC only once no published index uses it; an index swapped out
+ * by a reload can never be read after its memory is freed.
+ * <p>
+ * Space is never reused: answers of replaced scenarios stay in their buffer until the index is
+ * rebuilt. Direct buffers count against {@code -XX:MaxDirectMemorySize}, which defaults to the
+ * maximum heap size.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public class AnswerStore {
+
+    public static final int CHUNK_BYTES = 1 << 20;
+
+    private final boolean offHeap;
+    private ByteBuffer chunk;
+    private long offHeapBytes;
+
+    private AnswerStore(final boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Returns a store that keeps answers as heap strings.
+     */
+    public static AnswerStore onHeap() {
+        return new AnswerStore(false);
+    }
+
+    /**
+     * Returns a store that keeps answers in direct buffers outside the heap.
+     */
+    public static AnswerStore offHeap() {
+        return new AnswerStore(true);
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public StoredText store(final String text) {
+        if (!offHeap || text == null) return StoredText.of(text);
+
+        return storeUtf8(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Stores text that is already UTF-8 encoded, without decoding it when stored off the heap.
+     */
+    public StoredText storeUtf8(final byte[] utf8) {
+        if (!offHeap) return StoredText.of(new String(utf8, StandardCharsets.UTF_8));
+
+        synchronized (this) {
+            final ByteBuffer target;
+            if (utf8.length > CHUNK_BYTES) {
+                target = allocate(utf8.length);
+            } else {
+                if (chunk == null || chunk.remaining() < utf8.length) {
+                    chunk = allocate(CHUNK_BYTES);
+                }
+                target = chunk;
+            }
+            final int offset = target.position();
+            target.put(utf8);
+            return new OffHeap(target, offset, utf8.length);
+        }
+    }
+
+    /**
+     * Returns the direct memory reserved by this store, in bytes.
+     */
+    public synchronized long offHeapBytes() {
+        return offHeapBytes;
+    }
+
+    private ByteBuffer allocate(final int capacity) {
+        offHeapBytes += capacity;
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Text encoded in a shared direct buffer. Reads use absolute positions, so they never
+     * disturb the buffer's position, which only the store moves.
+     */
+    private record OffHeap(ByteBuffer buffer, int offset, int length) implements StoredText {
+
+        @Override
+        public String text() {
+            final byte[] utf8 = new byte[length];
+            buffer.get(offset, utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * The record itself, with compressed references; the buffer is shared by many answers.
+         */
+        @Override
+        public long heapBytes() {
+            return 24L;
+        }
+
+        @Override
+        public String toString() {
+            return "OffHeap[offset=" + offset + ", length=" + length + "]";
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package no.mattikj.mkd.duckai.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import no.mattikj.mkd.duckai.domain.ScenarioItem;
+import no.mattikj.mkd.duckai.domain.SparseVector;
+import no.mattikj.mkd.duckai.domain.StoredText;
+
+/**
+ * Compact binary snapshot of a built {@link ScenarioIndex}, so a restart can serve at once
+ * instead of loading and vectorizing every scenario again.
+ * <p>
+ * The snapshot holds the terms of the dictionary in id order, and every scenario with its
+ * prompt, answer and vector, including its norm and token count. It ends with a CRC32 of
+ * everything before it. The highest scenario version loaded into the index is stored too, so
+ * only scenarios inserted or updated after it need to be loaded from the database.
+ * <p>
+ * A snapshot is written to a temporary file next to the target, synced to disk and then moved
+ * over the target in one step, so a reader never sees a half-written snapshot. It is read by
+ * memory-mapping the file, which limits it to 2 GB.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public final class IndexSnapshot {
+
+    private static final int MAGIC = 0x44_4B_49_58;
+    private static final int VERSION = 1;
+    /**
+     * Magic, format version, highest scenario version, term count, item count and the checksum.
+     */
+    private static final long MIN_BYTES = 4 + 4 + 8 + 4 + 4 + 8;
+
+    private IndexSnapshot() {
+    }
+
+    /**
+     * Writes the scenarios and dictionary of the index to the path, replacing any snapshot there.
+     *
+     * @param maxScenarioVersion the highest scenario version loaded into the index
+     */
+    public static void write(
+        final Path path,
+        final ScenarioIndex index,
+        final long maxScenarioVersion
+    ) throws IOException {
+        // Items first: the dictionary read after them holds every term they use
+        final List<ScenarioItem> items = index.items();
+        final List<String> terms = index.dictionary().terms();
+
+        final Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        final Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                final OutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+                final CRC32 checksum = new CRC32();
+                final DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, checksum));
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(maxScenarioVersion);
+
+                out.writeInt(terms.size());
+                for (final String term : terms) {
+                    writeString(out, term);
+                }
+
+                out.writeInt(items.size());
+                for (final ScenarioItem item : items) {
+                    writeString(out, item.prompt());
+                    writeString(out, item.response());
+
+                    final SparseVector vector = item.vector();
+                    out.writeInt(vector.size());
+                    out.writeDouble(vector.norm());
+                    out.writeInt(vector.tokenCount());
+                    for (final int term : vector.terms()) {
+                        out.writeInt(term);
+                    }
+                    for (final float weight : vector.weights()) {
+                        out.writeFloat(weight);
+                    }
+                }
+                out.flush();
+
+                new DataOutputStream(buffered).writeLong(checksum.getValue());
+                buffered.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads the snapshot at the path into an empty index.
+     *
+     * @return the highest scenario version loaded into the index the snapshot was written from
+     * @throws IOException if the file cannot be read, or is not a valid snapshot
+     */
+    public static long read(final Path path, final ScenarioIndex target) throws IOException {
+        if (target.dictionary().size() > 0 || target.size() > 0) {
+            throw new IllegalArgumentException("A snapshot can only be read into an empty index");
+        }
+
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < MIN_BYTES) {
+                throw new IOException("Truncated scenario index snapshot: " + path);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Scenario index snapshot larger than 2 GB: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        try {
+            verifyChecksum(buffer);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a scenario index snapshot of version " + VERSION + ": " + path);
+            }
+            final long maxScenarioVersion = buffer.getLong();
+
+            final TermDictionary dictionary = target.dictionary();
+            final int termCount = buffer.getInt();
+            for (int id = 0; id < termCount; id++) {
+                if (dictionary.intern(readString(buffer)) != id) {
+                    throw new IOException("Duplicate term in snapshot: " + path);
+                }
+            }
+
+            final int itemCount = buffer.getInt();
+            final ScenarioItem[] items = new ScenarioItem[itemCount];
+            for (int i = 0; i < itemCount; i++) {
+                final String prompt = readString(buffer);
+                final byte[] response = readBytes(buffer);
+
+                final int size = buffer.getInt();
+                final double norm = buffer.getDouble();
+                final int tokenCount = buffer.getInt();
+                final int[] terms = new int[size];
+                buffer.asIntBuffer().get(terms);
+                buffer.position(buffer.position() + Integer.BYTES * size);
+                final float[] weights = new float[size];
+                buffer.asFloatBuffer().get(weights);
+                buffer.position(buffer.position() + Float.BYTES * size);
+
+                items[i] = new ScenarioItem(
+                    prompt,
+                    response == null ? StoredText.of(null) : target.answers().storeUtf8(response),
+                    new SparseVector(terms, weights, norm, tokenCount)
+                );
+            }
+            target.addAll(List.of(items));
+            return maxScenarioVersion;
+        } catch (final RuntimeException e) {
+            // Thrown by the buffer when a count points past the end of the file
+            throw new IOException("Corrupt scenario index snapshot: " + path, e);
+        }
+    }
+
+    private static void verifyChecksum(final ByteBuffer buffer) throws IOException {
+        final int bodyLength = buffer.limit() - Long.BYTES;
+        final CRC32 checksum = new CRC32();
+        checksum.update(buffer.slice(0, bodyLength));
+        if (checksum.getValue() != buffer.getLong(bodyLength)) {
+            throw new IOException("Checksum mismatch in scenario index snapshot");
+        }
+        buffer.limit(bodyLength);
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final byte[] bytes = readBytes(buffer);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) return null;
+
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
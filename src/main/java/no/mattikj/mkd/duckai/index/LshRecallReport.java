@@ -0,0 +1,131 @@
+package no.mattikj.mkd.duckai.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import no.mattikj.mkd.duckai.domain.SparseVector;
+
+/**
+ * Measures how often {@link MinHashLsh} finds the most similarly spelled prompt, and at what
+ * cost, compared to an exact scan over all prompts.
+ * <p>
+ * For every query the exact scan scores the trigram cosine similarity against every prompt.
+ * Each band configuration then builds its own MinHash index over the same prompts, and a query
+ * counts towards its recall if the best of its candidates scores as high as the exact best.
+ * The exact scan visits every prompt for every query, so the report should be run on a sample
+ * of queries.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public final class LshRecallReport {
+
+    private LshRecallReport() {
+    }
+
+    /**
+     * One band configuration in the report.
+     *
+     * @param recall             the share of queries whose exact best prompt was found
+     * @param averageCandidates  the average number of candidates ranked per query
+     * @param averageMicros      the average lookup time per query, ranking included
+     * @param exactAverageMicros the average time per query of the exact scan
+     */
+    public record Row(
+        int bands,
+        int rows,
+        double recall,
+        double averageCandidates,
+        double averageMicros,
+        double exactAverageMicros
+    ) {
+    }
+
+    /**
+     * Evaluates every band configuration, given as {@code {bands, rows}} pairs, against the
+     * exact scan of the prompts.
+     */
+    public static List<Row> evaluate(final List<String> prompts, final List<String> queries, final List<int[]> configurations) {
+        final List<SparseVector> vectors = prompts.stream().map(MinHashLsh::shingles).toList();
+        final List<SparseVector> queryVectors = queries.stream().map(MinHashLsh::shingles).toList();
+
+        final double[] exactBest = new double[queryVectors.size()];
+        final long exactStartedAt = System.nanoTime();
+        for (int i = 0; i < queryVectors.size(); i++) {
+            for (final SparseVector vector : vectors) {
+                exactBest[i] = Math.max(exactBest[i], queryVectors.get(i).cosineSimilarity(vector));
+            }
+        }
+        final double exactMicros = micros(System.nanoTime() - exactStartedAt, queryVectors.size());
+
+        final List<Row> rows = new ArrayList<>(configurations.size());
+        for (final int[] configuration : configurations) {
+            final MinHashLsh lsh = new MinHashLsh(configuration[0], configuration[1]);
+            vectors.forEach(lsh::add);
+
+            int found = 0;
+            int expected = 0;
+            long candidates = 0;
+            final long startedAt = System.nanoTime();
+            for (int i = 0; i < queryVectors.size(); i++) {
+                final SparseVector query = queryVectors.get(i);
+                final int[] docs = lsh.candidates(query);
+                double best = 0.0;
+                for (final int doc : docs) {
+                    best = Math.max(best, query.cosineSimilarity(lsh.vector(doc)));
+                }
+                candidates += docs.length;
+
+                if (exactBest[i] > 0) {
+                    expected++;
+                    if (best >= exactBest[i]) {
+                        found++;
+                    }
+                }
+            }
+            final long elapsed = System.nanoTime() - startedAt;
+
+            rows.add(new Row(
+                configuration[0],
+                configuration[1],
+                expected > 0 ? (double) found / expected : 1.0,
+                queryVectors.isEmpty() ? 0.0 : (double) candidates / queryVectors.size(),
+                micros(elapsed, queryVectors.size()),
+                exactMicros
+            ));
+        }
+        return rows;
+    }
+
+    /**
+     * Picks prompts at random and gives each a single typo: a dropped, swapped or replaced letter.
+     */
+    public static List<String> typoQueries(final List<String> prompts, final int samples, final Random random) {
+        final List<String> queries = new ArrayList<>(samples);
+        for (int i = 0; i < samples && !prompts.isEmpty(); i++) {
+            final String prompt = prompts.get(random.nextInt(prompts.size()));
+            if (prompt == null || prompt.length() < 2) {
+                queries.add(prompt);
+                continue;
+            }
+
+            final int position = random.nextInt(prompt.length() - 1);
+            final StringBuilder query = new StringBuilder(prompt);
+            switch (random.nextInt(3)) {
+                case 0 -> query.deleteCharAt(position);
+                case 1 -> {
+                    query.setCharAt(position, prompt.charAt(position + 1));
+                    query.setCharAt(position + 1, prompt.charAt(position));
+                }
+                default -> query.setCharAt(position, (char) ('a' + random.nextInt(26)));
+            }
+            queries.add(query.toString());
+        }
+        return queries;
+    }
+
+    private static double micros(final long nanos, final int queries) {
+        return queries > 0 ? nanos / 1_000.0 / queries : 0.0;
+    }
+}
@@ -0,0 +1,190 @@
+package no.mattikj.mkd.duckai.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import no.mattikj.mkd.duckai.domain.SparseVector;
+
+/**
+ * Approximate nearest-neighbour lookup of prompts by MinHash signatures over character
+ * trigrams, with LSH banding.
+ * <p>
+ * Every prompt is reduced to the hashed trigrams of its normalized text. Its signature holds
+ * {@code bands * rows} MinHash values, and every band of {@code rows} values is hashed into a
+ * bucket. Two prompts become candidates of each other if they share a bucket in any band, which
+ * happens with probability {@code 1 - (1 - J^rows)^bands} for trigram Jaccard similarity
+ * {@code J}. More rows per band make candidates stricter; more bands raise recall.
+ * <p>
+ * A single typo only changes up to three trigrams, so a typo'd prompt still shares most of its
+ * buckets with the stored one. This class is not thread-safe; {@link ScenarioIndex} guards it
+ * with its own lock.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public class MinHashLsh {
+
+    private static final int SHINGLE_LENGTH = 3;
+    private static final long SEED = 0x5DEECE66DL;
+
+    private final int bands;
+    private final int rows;
+    private final long[] multipliers;
+    private final long[] increments;
+    private final List<Map<Long, Bucket>> buckets;
+    private final List<SparseVector> vectors = new ArrayList<>();
+
+    public MinHashLsh(final int bands, final int rows) {
+        if (bands <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("bands and rows must be positive");
+        }
+        this.bands = bands;
+        this.rows = rows;
+
+        final SplittableRandom random = new SplittableRandom(SEED);
+        this.multipliers = new long[bands * rows];
+        this.increments = new long[bands * rows];
+        for (int i = 0; i < multipliers.length; i++) {
+            multipliers[i] = random.nextLong() | 1L;
+            increments[i] = random.nextLong();
+        }
+
+        this.buckets = new ArrayList<>(bands);
+        for (int band = 0; band < bands; band++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    public int bands() {
+        return bands;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the hashed character trigrams of the normalized prompt, weighted by occurrence. The
+     * prompt is padded with a space on both ends, so short words and word boundaries count too.
+     */
+    public static SparseVector shingles(final String prompt) {
+        final String normalized = PromptNormalizer.normalize(prompt);
+        if (normalized == null || normalized.isEmpty()) return SparseVector.EMPTY;
+
+        final String padded = " " + normalized + " ";
+        final int count = padded.length() - SHINGLE_LENGTH + 1;
+        final int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            final long shingle = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+            ids[i] = (int) mix(shingle) & Integer.MAX_VALUE;
+        }
+        return SparseVector.of(ids, count);
+    }
+
+    /**
+     * Adds the trigrams of the next document. Documents are numbered in the order they are added.
+     */
+    public void add(final SparseVector shingles) {
+        final int doc = vectors.size();
+        vectors.add(shingles);
+        if (shingles.size() == 0) return;
+
+        final long[] signature = signature(shingles);
+        for (int band = 0; band < bands; band++) {
+            buckets.get(band).computeIfAbsent(bandKey(signature, band), key -> new Bucket()).add(doc);
+        }
+    }
+
+    /**
+     * Returns the trigrams of the given document.
+     */
+    public SparseVector vector(final int doc) {
+        return vectors.get(doc);
+    }
+
+    /**
+     * Returns the ascending ids of all documents sharing at least one band bucket with the
+     * trigrams. The cost depends on the number of bucket hits only, not on the number of
+     * documents.
+     */
+    public int[] candidates(final SparseVector shingles) {
+        if (shingles.size() == 0) return new int[0];
+
+        final long[] signature = signature(shingles);
+        final Bucket[] hits = new Bucket[bands];
+        int total = 0;
+        for (int band = 0; band < bands; band++) {
+            hits[band] = buckets.get(band).get(bandKey(signature, band));
+            if (hits[band] != null) {
+                total += hits[band].size;
+            }
+        }
+
+        final int[] candidates = new int[total];
+        int offset = 0;
+        for (final Bucket bucket : hits) {
+            if (bucket == null) continue;
+
+            System.arraycopy(bucket.docs, 0, candidates, offset, bucket.size);
+            offset += bucket.size;
+        }
+
+        // A similar document is usually in several of the buckets
+        Arrays.sort(candidates);
+        int unique = 0;
+        for (int i = 0; i < total; i++) {
+            if (unique == 0 || candidates[i] != candidates[unique - 1]) {
+                candidates[unique++] = candidates[i];
+            }
+        }
+        return unique == total ? candidates : Arrays.copyOf(candidates, unique);
+    }
+
+    private long[] signature(final SparseVector shingles) {
+        final long[] signature = new long[multipliers.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (final int shingle : shingles.terms()) {
+            for (int i = 0; i < signature.length; i++) {
+                final long hash = (shingle * multipliers[i] + increments[i]) >>> 1;
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private long bandKey(final long[] signature, final int band) {
+        long key = band;
+        for (int row = 0; row < rows; row++) {
+            key = mix(key * 31 + signature[band * rows + row]);
+        }
+        return key;
+    }
+
+    /**
+     * The SplitMix64 finalizer, spreading every input bit over the whole hash.
+     */
+    private static long mix(final long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class Bucket {
+        private int[] docs = new int[2];
+        private int size;
+
+        private void add(final int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+}
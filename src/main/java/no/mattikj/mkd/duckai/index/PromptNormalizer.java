@@ -0,0 +1,28 @@
+package no.mattikj.mkd.duckai.index;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes scenario prompts for deduplication: whitespace runs are collapsed to a single
+ * space, the prompt is trimmed and lowercased.
+ * <p>
+ * Matches the {@code prompt_key} column of {@code duck.scenario}, which holds the MD5 hash of
+ * the same normalization, so the index treats exactly the prompts the database considers
+ * duplicates as the same scenario.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public final class PromptNormalizer {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private PromptNormalizer() {
+    }
+
+    public static String normalize(final String prompt) {
+        if (prompt == null) return null;
+        return WHITESPACE.matcher(prompt).replaceAll(" ").strip().toLowerCase(Locale.ROOT);
+    }
+}
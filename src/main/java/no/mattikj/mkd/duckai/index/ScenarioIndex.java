@@ -0,0 +1,810 @@
+package no.mattikj.mkd.duckai.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import no.mattikj.mkd.duckai.domain.ScenarioItem;
+import no.mattikj.mkd.duckai.domain.ScenarioMatch;
+import no.mattikj.mkd.duckai.domain.SparseVector;
+
+/**
+ * In-memory inverted index over scenario prompts.
+ * <p>
+ * Every term id maps to a posting list of the scenarios containing it, in insertion order. A
+ * lookup only visits scenarios that share at least one term with the prompt; all other
+ * scenarios have a score of zero and can never be the best match.
+ * <p>
+ * Lookups use MaxScore pruning. Every posting list knows the highest score its term can add to
+ * any scenario. Terms whose upper bounds together cannot reach the score a match needs are never
+ * iterated, and a scenario is only fully scored if its upper bound can still reach that score.
+ * <p>
+ * A lookup whose prompt terms have more postings than the parallel threshold splits the
+ * scenarios into contiguous shards by insertion order and searches them in parallel on the
+ * common fork-join pool. The best matches of every shard are merged into the global best, with
+ * the same result as a sequential search.
+ * <p>
+ * An index created with a {@link MinHashLsh} also finds scenarios whose prompts are spelled
+ * similarly, typos included, by the cosine similarity of their character trigrams.
+ * <p>
+ * Scenarios are unique by normalized prompt. Adding a scenario whose prompt is already indexed
+ * replaces the old one: the old entry is marked deleted and skipped by lookups, and is only
+ * dropped for good when the index is rebuilt.
+ * <p>
+ * The index keeps the document frequency of every term and the total length of all scenarios
+ * up to date as scenarios are added and replaced, so the {@link ScoringMode#TF_IDF} and
+ * {@link ScoringMode#BM25} modes cost no more per lookup than plain cosine similarity.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public class ScenarioIndex {
+
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    /**
+     * Relative slack on upper bounds, so rounding never prunes a scenario that would have matched.
+     */
+    private static final double BOUND_SLACK = 1e-9;
+
+    private final int shards;
+    private final int parallelMinCandidates;
+    private final MinHashLsh lsh;
+    private final AnswerStore answers;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TermDictionary dictionary = new TermDictionary();
+    private final List<ScenarioItem> items = new ArrayList<>();
+    private final List<PostingList> postings = new ArrayList<>();
+    private final Map<String, Integer> docsByPrompt = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private float[] tfIdfNorms = new float[64];
+    private long totalLength;
+    private long itemBytes;
+
+    /**
+     * Creates an index that always searches sequentially.
+     */
+    public ScenarioIndex() {
+        this(1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates an index that searches in parallel when a lookup has many candidates.
+     *
+     * @param shards                the number of shards a parallel lookup is split into
+     * @param parallelMinCandidates the number of postings a lookup must visit, at the least,
+     *                              before it is split into shards
+     */
+    public ScenarioIndex(final int shards, final int parallelMinCandidates) {
+        this(shards, parallelMinCandidates, null);
+    }
+
+    /**
+     * Creates an index that also supports {@link #findSimilarPrompts}.
+     *
+     * @param lsh an empty MinHash index, owned by this index from now on, or {@code null}
+     */
+    public ScenarioIndex(final int shards, final int parallelMinCandidates, final MinHashLsh lsh) {
+        this(shards, parallelMinCandidates, lsh, AnswerStore.onHeap());
+    }
+
+    /**
+     * Creates an index whose answers are meant to be stored in the given store.
+     *
+     * @param answers the store that {@link #answers()} returns, owned by this index from now on
+     */
+    public ScenarioIndex(
+        final int shards,
+        final int parallelMinCandidates,
+        final MinHashLsh lsh,
+        final AnswerStore answers
+    ) {
+        this.shards = Math.max(1, shards);
+        this.parallelMinCandidates = parallelMinCandidates;
+        this.lsh = lsh;
+        this.answers = answers;
+    }
+
+    /**
+     * Returns the term dictionary used by the vectors in this index.
+     */
+    public TermDictionary dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the store the answers of scenarios added to this index are kept in.
+     */
+    public AnswerStore answers() {
+        return answers;
+    }
+
+    /**
+     * Appends a single scenario to the index, replacing any scenario with the same normalized prompt.
+     */
+    public void add(final ScenarioItem item) {
+        lock.writeLock().lock();
+        try {
+            append(item);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a batch of scenarios to the index, replacing any scenarios with the same normalized
+     * prompts. Readers see either none or all of the batch.
+     */
+    public void addAll(final Collection<ScenarioItem> newItems) {
+        lock.writeLock().lock();
+        try {
+            newItems.forEach(this::append);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Recomputes the TF-IDF norm of every scenario from the current document frequencies, and
+     * the score upper bounds of every term from the scenarios that are not deleted.
+     * <p>
+     * A scenario gets its norm from the document frequencies at the time it is added, so the
+     * norms of the first scenarios of a fresh index are computed from very few scenarios. This
+     * is called once a rebuilt index is fully loaded.
+     */
+    public void refreshStatistics() {
+        lock.writeLock().lock();
+        try {
+            postings.forEach(PostingList::resetBounds);
+            for (int doc = 0; doc < items.size(); doc++) {
+                if (deleted.get(doc)) continue;
+
+                final SparseVector vector = items.get(doc).vector();
+                tfIdfNorms[doc] = (float) tfIdfNorm(vector);
+                updateBounds(doc, vector);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return items.size() - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a rough estimate of the heap retained by the index, in bytes: the scenarios with
+     * their prompts, responses and vectors, the posting lists and the per-scenario norms. The
+     * term dictionary and the MinHash index are not counted, nor are answers stored off the heap;
+     * see {@link #offHeapBytes()}.
+     */
+    public long estimatedMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = itemBytes + 16L + 4L * tfIdfNorms.length;
+            for (final PostingList list : postings) {
+                bytes += 56L + 4L * list.docs.length;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the direct memory reserved for answers stored off the heap, in bytes.
+     */
+    public long offHeapBytes() {
+        return answers.offHeapBytes();
+    }
+
+    /**
+     * Finds the scenario with the highest cosine similarity to the given vector.
+     * <p>
+     * Gives the same result as a linear scan over all scenarios in insertion order: a scenario
+     * must score strictly above zero, ties are won by the earliest inserted scenario, and the
+     * best score must reach the threshold.
+     *
+     * @return the best matching scenario, or {@code null} if no scenario reaches the threshold
+     */
+    public ScenarioItem findBestMatch(final SparseVector inputVector, final double threshold) {
+        return findBestMatch(inputVector, ScoringMode.COSINE, threshold);
+    }
+
+    /**
+     * Finds the scenario with the highest score in the given scoring mode.
+     *
+     * @return the best matching scenario, or {@code null} if no scenario reaches the threshold
+     */
+    public ScenarioItem findBestMatch(final SparseVector inputVector, final ScoringMode mode, final double threshold) {
+        final ScenarioMatch best = findBestCandidate(inputVector, mode, threshold);
+        return best != null ? best.item() : null;
+    }
+
+    /**
+     * Finds the scenario with the highest cosine similarity to the given vector, regardless of
+     * any threshold.
+     *
+     * @return the best scoring scenario with its score, or {@code null} if no scenario scores
+     * above zero
+     */
+    public ScenarioMatch findBestCandidate(final SparseVector inputVector) {
+        return findBestCandidate(inputVector, ScoringMode.COSINE);
+    }
+
+    /**
+     * Finds the scenario with the highest score in the given scoring mode, regardless of any
+     * threshold.
+     *
+     * @return the best scoring scenario with its score, or {@code null} if no scenario scores
+     * above zero
+     */
+    public ScenarioMatch findBestCandidate(final SparseVector inputVector, final ScoringMode mode) {
+        return findBestCandidate(inputVector, mode, 0.0);
+    }
+
+    /**
+     * Finds the scenario with the highest score in the given scoring mode, if it reaches the
+     * minimum score. A higher minimum score lets the lookup skip more scenarios.
+     *
+     * @return the best scoring scenario with its score, or {@code null} if no scenario scores
+     * above zero and at least the minimum score
+     */
+    public ScenarioMatch findBestCandidate(final SparseVector inputVector, final ScoringMode mode, final double minScore) {
+        final List<ScenarioMatch> top = findTopMatches(inputVector, mode, 1, minScore);
+        return top.isEmpty() ? null : top.get(0);
+    }
+
+    /**
+     * Finds the highest scoring scenarios that score above zero and at least the minimum score,
+     * best first. Scenarios with equal scores are ordered by insertion.
+     *
+     * @param limit the maximum number of scenarios to return
+     */
+    public List<ScenarioMatch> findTopMatches(
+        final SparseVector inputVector,
+        final ScoringMode mode,
+        final int limit,
+        final double minScore
+    ) {
+        if (inputVector.norm() == 0 || limit <= 0) return List.of();
+
+        lock.readLock().lock();
+        try {
+            final Query query = new Query(inputVector, mode);
+            final int shardCount = query.candidates >= parallelMinCandidates ? Math.min(shards, items.size()) : 1;
+            if (shardCount <= 1) {
+                final TopMatches top = new TopMatches(limit, minScore);
+                search(query, top, 0, items.size());
+                return top.toList();
+            }
+            return searchInParallel(query, limit, minScore, shardCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the scenarios whose prompts are spelled most like the given prompt, best first.
+     * <p>
+     * Candidates come from the MinHash buckets of the prompt, so this takes time in the number of
+     * similar scenarios rather than all scenarios. They are then ranked exactly by the cosine
+     * similarity of their character trigrams. Scenarios that are spelled alike but land in no
+     * shared bucket are missed.
+     *
+     * @return the best matches scoring at least the minimum score, or an empty list if this
+     * index has no MinHash index
+     */
+    public List<ScenarioMatch> findSimilarPrompts(final String prompt, final int limit, final double minScore) {
+        if (lsh == null || limit <= 0) return List.of();
+
+        final SparseVector shingles = MinHashLsh.shingles(prompt);
+        lock.readLock().lock();
+        try {
+            final TopMatches top = new TopMatches(limit, minScore);
+            for (final int doc : lsh.candidates(shingles)) {
+                if (!deleted.get(doc)) {
+                    top.offer(items.get(doc), shingles.cosineSimilarity(lsh.vector(doc)));
+                }
+            }
+            return top.toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all scenarios, in insertion order. Every term id in their vectors is already in
+     * the dictionary when this returns.
+     */
+    public List<ScenarioItem> items() {
+        lock.readLock().lock();
+        try {
+            final List<ScenarioItem> live = new ArrayList<>(items.size() - deletedCount);
+            for (int doc = 0; doc < items.size(); doc++) {
+                if (!deleted.get(doc)) {
+                    live.add(items.get(doc));
+                }
+            }
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the prompts of all scenarios, in insertion order.
+     */
+    public List<String> prompts() {
+        lock.readLock().lock();
+        try {
+            final List<String> prompts = new ArrayList<>(items.size() - deletedCount);
+            for (int doc = 0; doc < items.size(); doc++) {
+                if (!deleted.get(doc)) {
+                    prompts.add(items.get(doc).prompt());
+                }
+            }
+            return prompts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scores every scenario without any pruning. Only used to verify the pruned search.
+     */
+    ScenarioMatch findBestCandidateExhaustively(final SparseVector inputVector, final ScoringMode mode) {
+        if (inputVector.norm() == 0) return null;
+
+        lock.readLock().lock();
+        try {
+            final Query query = new Query(inputVector, mode);
+            double bestScore = 0.0;
+            ScenarioItem bestMatch = null;
+            for (int doc = 0; doc < items.size(); doc++) {
+                if (deleted.get(doc)) continue;
+
+                final double score = query.score(doc, items.get(doc).vector());
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestMatch = items.get(doc);
+                }
+            }
+            return bestMatch != null ? new ScenarioMatch(bestMatch, bestScore) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches every shard on its own and merges the shard results in shard order. Shards hold
+     * consecutive scenarios, so merging in shard order keeps ties won by the earliest scenario.
+     * <p>
+     * The workers only read the index, and the calling thread holds the read lock until they
+     * are done.
+     */
+    private List<ScenarioMatch> searchInParallel(
+        final Query query,
+        final int limit,
+        final double minScore,
+        final int shardCount
+    ) {
+        final int docCount = items.size();
+        final int shardSize = (docCount + shardCount - 1) / shardCount;
+        final List<TopMatches> shardMatches = IntStream.range(0, shardCount)
+            .parallel()
+            .mapToObj(shard -> {
+                final TopMatches top = new TopMatches(limit, minScore);
+                search(query, top, shard * shardSize, Math.min(docCount, (shard + 1) * shardSize));
+                return top;
+            })
+            .toList();
+
+        final TopMatches merged = new TopMatches(limit, minScore);
+        shardMatches.forEach(top -> top.matches.forEach(match -> merged.offer(match.item(), match.score())));
+        return merged.toList();
+    }
+
+    /**
+     * Runs a document-at-a-time MaxScore search over the scenarios in {@code [fromDoc, toDoc)}.
+     * <p>
+     * The prompt terms are ordered by their upper bound. The longest prefix of terms whose bounds
+     * add up to no more than what a scenario needs to qualify is non-essential: a scenario
+     * containing only those terms cannot qualify, so their posting lists are never iterated. The
+     * prefix grows as better matches raise the score needed.
+     */
+    private void search(final Query query, final TopMatches top, final int fromDoc, final int toDoc) {
+        final int termCount = query.lists.length;
+        final int[] cursors = new int[termCount];
+        for (int i = 0; i < termCount; i++) {
+            cursors[i] = query.lists[i].firstAtOrAfter(fromDoc);
+        }
+
+        int essential = nonEssentialPrefix(query, top);
+        while (essential < termCount) {
+            int doc = Integer.MAX_VALUE;
+            for (int i = essential; i < termCount; i++) {
+                final PostingList list = query.lists[i];
+                if (cursors[i] < list.size && list.docs[cursors[i]] < doc) {
+                    doc = list.docs[cursors[i]];
+                }
+            }
+            if (doc >= toDoc) return;
+
+            // Non-essential terms may or may not be in this scenario, so assume they are
+            double upperBound = query.boundPrefix[essential];
+            for (int i = essential; i < termCount; i++) {
+                final PostingList list = query.lists[i];
+                if (cursors[i] < list.size && list.docs[cursors[i]] == doc) {
+                    upperBound += query.bounds[i];
+                    cursors[i]++;
+                }
+            }
+
+            if (deleted.get(doc) || !top.canQualify(upperBound)) continue;
+
+            final ScenarioItem item = items.get(doc);
+            if (top.offer(item, query.score(doc, item.vector()))) {
+                essential = nonEssentialPrefix(query, top);
+            }
+        }
+    }
+
+    private static int nonEssentialPrefix(final Query query, final TopMatches top) {
+        int prefix = 0;
+        while (prefix < query.lists.length && !top.canQualify(query.boundPrefix[prefix + 1])) {
+            prefix++;
+        }
+        return prefix;
+    }
+
+    private void append(final ScenarioItem item) {
+        final int doc = items.size();
+        items.add(item);
+
+        final String promptKey = PromptNormalizer.normalize(item.prompt());
+        final Integer replaced = promptKey != null ? docsByPrompt.put(promptKey, doc) : null;
+        if (replaced != null) {
+            delete(replaced);
+        }
+
+        if (lsh != null) {
+            lsh.add(MinHashLsh.shingles(item.prompt()));
+        }
+
+        final SparseVector vector = item.vector();
+        for (final int term : vector.terms()) {
+            while (postings.size() <= term) {
+                postings.add(new PostingList());
+            }
+            final PostingList list = postings.get(term);
+            list.add(doc);
+            list.documentFrequency++;
+        }
+        totalLength += vector.tokenCount();
+        itemBytes += estimatedBytes(item);
+
+        if (doc >= tfIdfNorms.length) {
+            tfIdfNorms = Arrays.copyOf(tfIdfNorms, tfIdfNorms.length * 2);
+        }
+        tfIdfNorms[doc] = (float) tfIdfNorm(vector);
+        updateBounds(doc, vector);
+    }
+
+    /**
+     * Assumes compressed references, and strings at one byte per character, as for compact
+     * Latin-1 strings: the item, its vector with the two arrays, the prompt and the answer.
+     */
+    private static long estimatedBytes(final ScenarioItem item) {
+        final SparseVector vector = item.vector();
+        return 24L + 40L + 32L + 8L * vector.size()
+               + estimatedBytes(item.prompt()) + item.answer().heapBytes();
+    }
+
+    private static long estimatedBytes(final String value) {
+        return value == null ? 0L : 40L + value.length();
+    }
+
+    private void delete(final int doc) {
+        deleted.set(doc);
+        deletedCount++;
+
+        final SparseVector vector = items.get(doc).vector();
+        for (final int term : vector.terms()) {
+            postings.get(term).documentFrequency--;
+        }
+        totalLength -= vector.tokenCount();
+    }
+
+    /**
+     * Raises the upper bounds of the terms of the given scenario to cover it. Bounds are not
+     * lowered when a scenario is deleted, which keeps them valid, if less tight, until the next
+     * {@link #refreshStatistics()}.
+     */
+    private void updateBounds(final int doc, final SparseVector vector) {
+        final double norm = vector.norm();
+        final double tfIdfNorm = tfIdfNorms[doc];
+        for (int i = 0; i < vector.size(); i++) {
+            final PostingList list = postings.get(vector.terms()[i]);
+            final double tf = vector.weights()[i];
+            list.maxTf = Math.max(list.maxTf, tf);
+            list.minLength = Math.min(list.minLength, vector.tokenCount());
+            if (norm > 0) {
+                list.maxCosineWeight = Math.max(list.maxCosineWeight, tf / norm);
+            }
+            if (tfIdfNorm > 0) {
+                list.maxTfIdfWeight = Math.max(list.maxTfIdfWeight, tf / tfIdfNorm);
+            }
+        }
+    }
+
+    private int documentFrequency(final int term) {
+        return term < postings.size() ? postings.get(term).documentFrequency : 0;
+    }
+
+    private double tfIdfNorm(final SparseVector vector) {
+        final int documents = items.size() - deletedCount;
+        double norm = 0.0;
+        for (int i = 0; i < vector.size(); i++) {
+            final double weight = vector.weights()[i] * tfIdf(documentFrequency(vector.terms()[i]), documents);
+            norm += weight * weight;
+        }
+        return Math.sqrt(norm);
+    }
+
+    /**
+     * Smoothed inverse document frequency, as if one extra scenario contained every term.
+     */
+    private static double tfIdf(final int documentFrequency, final int documents) {
+        return Math.log((1.0 + documents) / (1.0 + documentFrequency)) + 1.0;
+    }
+
+    private static double bm25Idf(final int documentFrequency, final int documents) {
+        return Math.log(1.0 + (documents - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    /**
+     * Per-lookup scoring state. The weight and upper bound of every prompt term and the
+     * normalization of the prompt are computed once, so scoring a scenario is a single merge of
+     * the two term arrays.
+     */
+    private final class Query {
+        private final SparseVector vector;
+        private final ScoringMode mode;
+        private final double[] termWeights;
+        private final double normalizer;
+        private final double averageLength;
+
+        /**
+         * Posting lists of the prompt terms that are in the index, by ascending upper bound.
+         */
+        private final PostingList[] lists;
+        private final double[] bounds;
+
+        /**
+         * {@code boundPrefix[i]} is the sum of the upper bounds of the first {@code i} lists.
+         */
+        private final double[] boundPrefix;
+
+        /**
+         * The total number of postings of the prompt terms.
+         */
+        private final long candidates;
+
+        private Query(final SparseVector vector, final ScoringMode mode) {
+            this.vector = vector;
+            this.mode = mode;
+            this.termWeights = new double[vector.size()];
+
+            final int documents = items.size() - deletedCount;
+            this.averageLength = documents > 0 ? (double) totalLength / documents : 1.0;
+
+            double knownTokens = 0.0;
+            double knownSquares = 0.0;
+            double normalizer = 0.0;
+            for (int i = 0; i < vector.size(); i++) {
+                final double tf = vector.weights()[i];
+                final int documentFrequency = documentFrequency(vector.terms()[i]);
+                knownTokens += tf;
+                knownSquares += tf * tf;
+
+                if (mode == ScoringMode.TF_IDF) {
+                    final double idf = tfIdf(documentFrequency, documents);
+                    termWeights[i] = tf * idf * idf;
+                    normalizer += (tf * idf) * (tf * idf);
+                } else if (mode == ScoringMode.BM25) {
+                    final double idf = bm25Idf(documentFrequency, documents);
+                    termWeights[i] = tf * idf;
+                    normalizer += tf * idf * (BM25_K1 + 1);
+                } else {
+                    termWeights[i] = tf;
+                }
+            }
+
+            // Prompt tokens unknown to the index are in no scenario, so they get the highest idf
+            if (mode == ScoringMode.TF_IDF) {
+                final double unknownSquares = Math.max(0.0, vector.norm() * vector.norm() - knownSquares);
+                final double idf = tfIdf(0, documents);
+                normalizer = Math.sqrt(normalizer + unknownSquares * idf * idf);
+            } else if (mode == ScoringMode.BM25) {
+                final double unknownTokens = Math.max(0.0, vector.tokenCount() - knownTokens);
+                normalizer += unknownTokens * bm25Idf(0, documents) * (BM25_K1 + 1);
+            } else {
+                normalizer = vector.norm();
+            }
+            this.normalizer = normalizer;
+
+            final List<Integer> indexed = new ArrayList<>(vector.size());
+            final double[] termBounds = new double[vector.size()];
+            for (int i = 0; i < vector.size(); i++) {
+                final int term = vector.terms()[i];
+                if (term < postings.size() && postings.get(term).size > 0) {
+                    indexed.add(i);
+                    termBounds[i] = bound(i, postings.get(term));
+                }
+            }
+            indexed.sort((a, b) -> Double.compare(termBounds[a], termBounds[b]));
+
+            this.lists = new PostingList[indexed.size()];
+            this.bounds = new double[indexed.size()];
+            this.boundPrefix = new double[indexed.size() + 1];
+            long candidates = 0;
+            for (int i = 0; i < indexed.size(); i++) {
+                final int position = indexed.get(i);
+                lists[i] = postings.get(vector.terms()[position]);
+                bounds[i] = termBounds[position];
+                boundPrefix[i + 1] = boundPrefix[i] + bounds[i];
+                candidates += lists[i].size;
+            }
+            this.candidates = candidates;
+        }
+
+        /**
+         * Returns the highest score the prompt term at the given position can add to any
+         * scenario in the posting list.
+         */
+        private double bound(final int position, final PostingList list) {
+            if (normalizer == 0) return 0.0;
+
+            final double bound = switch (mode) {
+                case COSINE -> termWeights[position] * list.maxCosineWeight / normalizer;
+                case TF_IDF -> termWeights[position] * list.maxTfIdfWeight / normalizer;
+                case BM25 -> {
+                    // The term score grows with the term count and shrinks with the scenario length
+                    final double lengthNorm = BM25_K1 * (1 - BM25_B + BM25_B * list.minLength / averageLength);
+                    yield termWeights[position] * list.maxTf * (BM25_K1 + 1) / (list.maxTf + lengthNorm) / normalizer;
+                }
+            };
+            return Math.max(0.0, bound) * (1 + BOUND_SLACK);
+        }
+
+        private double score(final int doc, final SparseVector document) {
+            if (mode == ScoringMode.COSINE) {
+                return vector.cosineSimilarity(document);
+            }
+            if (normalizer == 0) return 0.0;
+
+            final int[] terms = vector.terms();
+            final int[] documentTerms = document.terms();
+            final float[] documentWeights = document.weights();
+            final double lengthNorm = BM25_K1 * (1 - BM25_B + BM25_B * document.tokenCount() / averageLength);
+
+            double sum = 0.0;
+            int i = 0;
+            int j = 0;
+            while (i < terms.length && j < documentTerms.length) {
+                final int a = terms[i];
+                final int b = documentTerms[j];
+                if (a == b) {
+                    final double tf = documentWeights[j];
+                    sum += mode == ScoringMode.TF_IDF
+                        ? termWeights[i] * tf
+                        : termWeights[i] * tf * (BM25_K1 + 1) / (tf + lengthNorm);
+                    i++;
+                    j++;
+                } else if (a < b) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+
+            if (mode == ScoringMode.TF_IDF) {
+                final double documentNorm = tfIdfNorms[doc];
+                return documentNorm > 0 ? sum / (normalizer * documentNorm) : 0.0;
+            }
+            return sum / normalizer;
+        }
+    }
+
+    /**
+     * The best matches found so far, best first. Scenarios are offered in insertion order, so a
+     * later scenario only pushes out an earlier one with a strictly higher score.
+     */
+    private static final class TopMatches {
+        private final int limit;
+        private final double minScore;
+        private final List<ScenarioMatch> matches;
+
+        private TopMatches(final int limit, final double minScore) {
+            this.limit = limit;
+            this.minScore = minScore;
+            this.matches = new ArrayList<>(Math.min(limit, 16));
+        }
+
+        /**
+         * Returns whether a scenario with the given upper bound could still be added.
+         */
+        private boolean canQualify(final double upperBound) {
+            if (upperBound <= 0 || upperBound < minScore) return false;
+            return matches.size() < limit || upperBound > matches.get(limit - 1).score();
+        }
+
+        private boolean offer(final ScenarioItem item, final double score) {
+            if (score <= 0 || score < minScore) return false;
+            if (matches.size() == limit && score <= matches.get(limit - 1).score()) return false;
+
+            int position = matches.size();
+            while (position > 0 && matches.get(position - 1).score() < score) {
+                position--;
+            }
+            matches.add(position, new ScenarioMatch(item, score));
+            if (matches.size() > limit) {
+                matches.remove(limit);
+            }
+            return true;
+        }
+
+        private List<ScenarioMatch> toList() {
+            return List.copyOf(matches);
+        }
+    }
+
+    private static final class PostingList {
+        private int[] docs = new int[4];
+        private int size;
+        private int documentFrequency;
+        private double maxTf;
+        private int minLength = Integer.MAX_VALUE;
+        private double maxCosineWeight;
+        private double maxTfIdfWeight;
+
+        private void add(final int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+
+        /**
+         * Returns the position of the first scenario at or after the given one.
+         */
+        private int firstAtOrAfter(final int doc) {
+            if (doc <= 0) return 0;
+
+            final int position = Arrays.binarySearch(docs, 0, size, doc);
+            return position >= 0 ? position : -position - 1;
+        }
+
+        private void resetBounds() {
+            maxTf = 0;
+            minLength = Integer.MAX_VALUE;
+            maxCosineWeight = 0;
+            maxTfIdfWeight = 0;
+        }
+    }
+}
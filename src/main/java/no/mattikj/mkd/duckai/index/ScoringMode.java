@@ -0,0 +1,27 @@
+package no.mattikj.mkd.duckai.index;
+
+/**
+ * How scenarios are scored against a prompt.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public enum ScoringMode {
+
+    /**
+     * Cosine similarity of raw term counts.
+     */
+    COSINE,
+
+    /**
+     * Cosine similarity of term counts weighted by inverse document frequency, so terms found
+     * in many scenarios count less than rare ones.
+     */
+    TF_IDF,
+
+    /**
+     * Okapi BM25, normalized by the highest score the prompt could reach so it falls between
+     * zero and one.
+     */
+    BM25
+}
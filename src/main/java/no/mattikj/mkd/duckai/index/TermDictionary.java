@@ -0,0 +1,170 @@
+package no.mattikj.mkd.duckai.index;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Interns tokens to dense int ids, so vectors and posting lists can be stored as primitive arrays.
+ * <p>
+ * Terms are kept in an open-addressed hash table that is probed with the characters of a token
+ * directly, so the tokenizer can look up a token from its reused buffer without making a
+ * string of it. A string is only made when a new term is interned.
+ * <p>
+ * Lookups are lock-free. Ids are assigned in first-seen order and never change.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public class TermDictionary {
+
+    public static final int UNKNOWN = -1;
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    /**
+     * Slots hold the id of a term plus one, so 0 marks an empty slot. A slot is written after
+     * the term it points to, so a reader that sees the id also sees the term. The table is only
+     * grown by the writer, which publishes a complete copy.
+     */
+    private record Table(AtomicIntegerArray slots, String[] terms) {
+    }
+
+    private volatile Table table = new Table(
+        new AtomicIntegerArray(INITIAL_CAPACITY),
+        new String[INITIAL_CAPACITY / 2]
+    );
+    private volatile int size;
+
+    /**
+     * Returns the id of the given term, assigning a new id if the term has not been seen before.
+     */
+    public int intern(final String term) {
+        final int id = lookup(term);
+        if (id != UNKNOWN) return id;
+
+        synchronized (this) {
+            final int existing = lookup(term);
+            return existing != UNKNOWN ? existing : add(term);
+        }
+    }
+
+    /**
+     * Returns the id of the first {@code length} characters of the buffer, assigning a new id if
+     * the term has not been seen before. The hash must equal the {@link String#hashCode()} of
+     * the term.
+     */
+    public int intern(final char[] buffer, final int length, final int hash) {
+        final int id = lookup(buffer, length, hash);
+        if (id != UNKNOWN) return id;
+
+        synchronized (this) {
+            final int existing = lookup(buffer, length, hash);
+            return existing != UNKNOWN ? existing : add(new String(buffer, 0, length));
+        }
+    }
+
+    /**
+     * Returns the id of the given term, or {@link #UNKNOWN} if the term has not been interned.
+     */
+    public int lookup(final String term) {
+        final Table current = table;
+        final int mask = current.slots().length() - 1;
+        for (int slot = spread(term.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            final int id = current.slots().get(slot) - 1;
+            if (id == UNKNOWN || current.terms()[id].equals(term)) return id;
+        }
+    }
+
+    /**
+     * Returns the id of the first {@code length} characters of the buffer, or {@link #UNKNOWN}
+     * if the term has not been interned. The hash must equal the {@link String#hashCode()} of
+     * the term. Nothing is allocated.
+     */
+    public int lookup(final char[] buffer, final int length, final int hash) {
+        final Table current = table;
+        final int mask = current.slots().length() - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            final int id = current.slots().get(slot) - 1;
+            if (id == UNKNOWN) return UNKNOWN;
+
+            final String term = current.terms()[id];
+            if (term.hashCode() == hash && contentEquals(term, buffer, length)) return id;
+        }
+    }
+
+    public String term(final int id) {
+        // Size first: a reader that sees an id also sees the table it was added to
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException(id);
+
+        return table.terms()[id];
+    }
+
+    /**
+     * Returns all terms, in id order.
+     */
+    public List<String> terms() {
+        final int count = size;
+        return List.of(Arrays.copyOf(table.terms(), count));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends the term under the next id. Called with the lock held, for a term that is not in
+     * the table.
+     */
+    private int add(final String term) {
+        final int id = size;
+        Table current = table;
+        // At most half full, so probes stay short and always reach an empty slot
+        if (id == current.terms().length) {
+            current = grow(current);
+            table = current;
+        }
+
+        current.terms()[id] = term;
+        current.slots().set(freeSlot(current.slots(), term.hashCode()), id + 1);
+        size = id + 1;
+        return id;
+    }
+
+    private static Table grow(final Table current) {
+        final Table grown = new Table(
+            new AtomicIntegerArray(current.slots().length() * 2),
+            Arrays.copyOf(current.terms(), current.terms().length * 2)
+        );
+        for (int id = 0; id < current.terms().length; id++) {
+            grown.slots().set(freeSlot(grown.slots(), grown.terms()[id].hashCode()), id + 1);
+        }
+        return grown;
+    }
+
+    private static int freeSlot(final AtomicIntegerArray slots, final int hash) {
+        final int mask = slots.length() - 1;
+        int slot = spread(hash) & mask;
+        while (slots.get(slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static boolean contentEquals(final String term, final char[] buffer, final int length) {
+        if (term.length() != length) return false;
+
+        for (int i = 0; i < length; i++) {
+            if (term.charAt(i) != buffer[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Mixes the high bits of the hash into the low ones that pick the slot, as {@code HashMap}
+     * does.
+     */
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
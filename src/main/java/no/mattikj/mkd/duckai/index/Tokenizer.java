@@ -0,0 +1,201 @@
+package no.mattikj.mkd.duckai.index;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+
+import no.mattikj.mkd.duckai.domain.SparseVector;
+
+/**
+ * Single-pass tokenizer for prompts.
+ * <p>
+ * The text is scanned once, code point by code point, and every token is lowercased into a
+ * reused buffer as it is read. Stopwords are rejected by a precomputed hash table, and term ids
+ * are looked up in the {@link TermDictionary} straight from the buffer, so no string is made of
+ * a token unless it is interned as a new term. Letters and digits of every script count as word characters, so
+ * Norwegian prompts such as "Hvor bor blåbærtrollet?" keep their words whole.
+ * <p>
+ * Instances are immutable and safe to share between threads.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public final class Tokenizer {
+
+    /**
+     * Receives every token, lowercased, in a buffer that is reused for the next token. The hash
+     * equals the {@link String#hashCode()} of the token.
+     */
+    @FunctionalInterface
+    public interface TokenConsumer {
+        void accept(char[] token, int length, int hash);
+    }
+
+    private final char[][] stopwords;
+    private final boolean keepsPunctuationInWords;
+
+    private Tokenizer(final Collection<String> stopwords, final boolean keepsPunctuationInWords) {
+        this.stopwords = new char[Integer.highestOneBit(Math.max(1, stopwords.size()) * 4)][];
+        this.keepsPunctuationInWords = keepsPunctuationInWords;
+        for (final String stopword : stopwords) {
+            final String lower = stopword.toLowerCase(Locale.ROOT);
+            int slot = lower.hashCode() & (this.stopwords.length - 1);
+            while (this.stopwords[slot] != null) {
+                slot = (slot + 1) & (this.stopwords.length - 1);
+            }
+            this.stopwords[slot] = lower.toCharArray();
+        }
+    }
+
+    /**
+     * Splits on every character that is not a letter, digit, mark or underscore, like
+     * {@code \W+} does for ASCII text.
+     */
+    public static Tokenizer words(final Collection<String> stopwords) {
+        return new Tokenizer(stopwords, false);
+    }
+
+    /**
+     * Splits on whitespace only. Letters, digits and parentheses are kept; any other character
+     * is dropped without splitting the word, so "what's" becomes "whats".
+     */
+    public static Tokenizer titleWords(final Collection<String> stopwords) {
+        return new Tokenizer(stopwords, true);
+    }
+
+    /**
+     * Passes every token of the text that is not a stopword to the consumer, in order.
+     */
+    public void forEachToken(final CharSequence text, final TokenConsumer consumer) {
+        if (text == null) return;
+
+        char[] buffer = new char[Math.min(text.length(), 64) + 2];
+        int length = 0;
+        int hash = 0;
+
+        int i = 0;
+        while (i <= text.length()) {
+            final int codePoint = i < text.length() ? Character.codePointAt(text, i) : ' ';
+            i += i < text.length() ? Character.charCount(codePoint) : 1;
+
+            if (isTokenPart(codePoint)) {
+                final int lower = Character.toLowerCase(codePoint);
+                if (length + 2 > buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                if (Character.isBmpCodePoint(lower)) {
+                    buffer[length++] = (char) lower;
+                    hash = 31 * hash + lower;
+                } else {
+                    buffer[length++] = Character.highSurrogate(lower);
+                    buffer[length++] = Character.lowSurrogate(lower);
+                    hash = 31 * (31 * hash + buffer[length - 2]) + buffer[length - 1];
+                }
+            } else if (isSeparator(codePoint) && length > 0) {
+                if (!isStopword(buffer, length, hash)) {
+                    consumer.accept(buffer, length, hash);
+                }
+                length = 0;
+                hash = 0;
+            }
+        }
+    }
+
+    /**
+     * Vectorizes a prompt against the dictionary without adding to it. Tokens unknown to the
+     * dictionary get a temporary negative id, so they still count towards the norm of the
+     * vector.
+     */
+    public SparseVector vectorize(final CharSequence text, final TermDictionary dictionary) {
+        final TermIds termIds = new TermIds(text);
+        forEachToken(text, (token, length, hash) -> {
+            int termId = dictionary.lookup(token, length, hash);
+            if (termId == TermDictionary.UNKNOWN) {
+                termId = termIds.unknownId(token, length, hash);
+            }
+            termIds.add(termId);
+        });
+        return SparseVector.of(termIds.ids, termIds.length);
+    }
+
+    /**
+     * Vectorizes a scenario prompt, interning new tokens into the dictionary.
+     */
+    public SparseVector vectorizeForIndex(final CharSequence text, final TermDictionary dictionary) {
+        final TermIds termIds = new TermIds(text);
+        forEachToken(text, (token, length, hash) -> termIds.add(dictionary.intern(token, length, hash)));
+        return SparseVector.of(termIds.ids, termIds.length);
+    }
+
+    private boolean isTokenPart(final int codePoint) {
+        if (Character.isLetterOrDigit(codePoint)) return true;
+        if (keepsPunctuationInWords) return codePoint == '(' || codePoint == ')';
+
+        final int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK
+            || type == Character.COMBINING_SPACING_MARK
+            || type == Character.CONNECTOR_PUNCTUATION;
+    }
+
+    private boolean isSeparator(final int codePoint) {
+        return !keepsPunctuationInWords || Character.isWhitespace(codePoint);
+    }
+
+    private boolean isStopword(final char[] token, final int length, final int hash) {
+        int slot = hash & (stopwords.length - 1);
+        while (stopwords[slot] != null) {
+            if (Arrays.equals(stopwords[slot], 0, stopwords[slot].length, token, 0, length)) return true;
+            slot = (slot + 1) & (stopwords.length - 1);
+        }
+        return false;
+    }
+
+    /**
+     * Term ids of a single text. A text of n characters has at most (n + 1) / 2 tokens.
+     * <p>
+     * Tokens unknown to the dictionary are copied one after another into a single buffer, so a
+     * repeated unknown token gets the same temporary id. Prompts have few of them, so they are
+     * compared one by one.
+     */
+    private static final class TermIds {
+        private final int[] ids;
+        private int length;
+        private char[] unknownChars;
+        private int[] unknownEnds;
+        private int[] unknownHashes;
+        private int unknownCount;
+
+        private TermIds(final CharSequence text) {
+            this.ids = new int[text == null ? 0 : (text.length() + 1) / 2];
+        }
+
+        private void add(final int termId) {
+            ids[length++] = termId;
+        }
+
+        private int unknownId(final char[] token, final int tokenLength, final int hash) {
+            if (unknownChars == null) {
+                unknownChars = new char[Math.max(tokenLength, ids.length * 2)];
+                unknownEnds = new int[ids.length];
+                unknownHashes = new int[ids.length];
+            }
+
+            int start = 0;
+            for (int i = 0; i < unknownCount; i++) {
+                final int end = unknownEnds[i];
+                if (unknownHashes[i] == hash && Arrays.equals(unknownChars, start, end, token, 0, tokenLength)) {
+                    return -1 - i;
+                }
+                start = end;
+            }
+
+            if (start + tokenLength > unknownChars.length) {
+                unknownChars = Arrays.copyOf(unknownChars, Math.max(unknownChars.length * 2, start + tokenLength));
+            }
+            System.arraycopy(token, 0, unknownChars, start, tokenLength);
+            unknownEnds[unknownCount] = start + tokenLength;
+            unknownHashes[unknownCount] = hash;
+            return -1 - unknownCount++;
+        }
+    }
+}
@@ -18,6 +18,7 @@ public class ScenarioRowMapper implements RowMapper<ScenarioDto> {
         scenario.setScenarioId(rs.getString("scenario_db_id"));
         scenario.setPrompt(rs.getString("prompt"));
         scenario.setAnswer(rs.getString("answer"));
+        scenario.setVersion(rs.getLong("version"));
         return scenario;
     }
 }
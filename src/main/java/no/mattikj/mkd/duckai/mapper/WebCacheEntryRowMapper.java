@@ -0,0 +1,25 @@
+package no.mattikj.mkd.duckai.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import no.mattikj.mkd.duckai.dto.WebCacheEntryDto;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * RowMapper class for cached external API responses.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public class WebCacheEntryRowMapper implements RowMapper<WebCacheEntryDto> {
+    @Override
+    public WebCacheEntryDto mapRow(final ResultSet rs, final int rowNum) throws SQLException {
+        final WebCacheEntryDto entry = new WebCacheEntryDto();
+        entry.setSearchType(rs.getString("search_type"));
+        entry.setQuery(rs.getString("query"));
+        entry.setResponse(rs.getString("response"));
+        entry.setExpiresAt(rs.getObject("expires_at", OffsetDateTime.class));
+        return entry;
+    }
+}
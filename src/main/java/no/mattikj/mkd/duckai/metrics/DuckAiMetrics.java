@@ -0,0 +1,192 @@
+package no.mattikj.mkd.duckai.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import no.mattikj.mkd.duckai.domain.ResponseSourceType;
+import no.mattikj.mkd.duckai.domain.Upstream;
+import no.mattikj.mkd.duckai.domain.WebSearchType;
+import no.mattikj.mkd.duckai.resilience.CircuitBreaker;
+
+/**
+ * Timers, counters and gauges of the responder, the web search engine and its circuit breakers.
+ * <p>
+ * Every meter is registered up front, with one tag value per enum constant, so no tag can ever
+ * take a value from a prompt and the number of time series is fixed. Timers publish percentile
+ * histograms, so percentiles can be aggregated across instances in Prometheus.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Component
+public class DuckAiMetrics {
+
+    /**
+     * The stages of answering a prompt.
+     */
+    public enum Stage {
+        CLASSIFY,
+        VECTORIZE,
+        LOCAL_MATCH,
+        SIMILAR_MATCH,
+        WEB_FETCH,
+        FALLBACK
+    }
+
+    /**
+     * How a response was found.
+     */
+    public enum Outcome {
+        SCENARIO,
+        SIMILAR_PROMPT,
+        UNCERTAIN_MATCH,
+        INTERNET,
+        FALLBACK,
+        CACHED
+    }
+
+    /**
+     * The result of a single HTTP call to an upstream API. A client error is a 4xx answer other
+     * than 429, such as a 404 for an unknown topic: the API is healthy, so it is no failure.
+     */
+    public enum UpstreamOutcome {
+        SUCCESS,
+        CLIENT_ERROR,
+        ERROR,
+        TIMEOUT;
+
+        public boolean isFailure() {
+            return this == ERROR || this == TIMEOUT;
+        }
+    }
+
+    /**
+     * Why a call to an upstream API was refused before it was made.
+     */
+    public enum Rejection {
+        CIRCUIT_OPEN,
+        BULKHEAD_FULL,
+        RATE_LIMITED
+    }
+
+    private final MeterRegistry registry;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<ResponseSourceType, Map<WebSearchType, Map<Outcome, Counter>>> responseCounters =
+        new EnumMap<>(ResponseSourceType.class);
+    private final Map<Upstream, Map<UpstreamOutcome, Timer>> upstreamTimers = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, Map<Rejection, Counter>> rejectionCounters = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, Map<CircuitBreaker.State, Counter>> transitionCounters = new EnumMap<>(Upstream.class);
+
+    public DuckAiMetrics(final MeterRegistry registry) {
+        this.registry = registry;
+        for (final Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("duckai.response.stage")
+                .description("Time spent in each stage of answering a prompt")
+                .tag("stage", tag(stage))
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry));
+        }
+
+        for (final ResponseSourceType source : ResponseSourceType.values()) {
+            final Map<WebSearchType, Map<Outcome, Counter>> byType = new EnumMap<>(WebSearchType.class);
+            for (final WebSearchType type : WebSearchType.values()) {
+                final Map<Outcome, Counter> byOutcome = new EnumMap<>(Outcome.class);
+                for (final Outcome outcome : Outcome.values()) {
+                    byOutcome.put(outcome, Counter.builder("duckai.responses")
+                        .description("Responses by source, prompt type and how they were found")
+                        .tag("source", tag(source))
+                        .tag("type", tag(type))
+                        .tag("outcome", tag(outcome))
+                        .register(registry));
+                }
+                byType.put(type, byOutcome);
+            }
+            responseCounters.put(source, byType);
+        }
+
+        for (final Upstream upstream : Upstream.values()) {
+            final Map<UpstreamOutcome, Timer> byOutcome = new EnumMap<>(UpstreamOutcome.class);
+            for (final UpstreamOutcome outcome : UpstreamOutcome.values()) {
+                byOutcome.put(outcome, Timer.builder("duckai.upstream.requests")
+                    .description("HTTP calls to upstream APIs, by result")
+                    .tag("upstream", upstream.key())
+                    .tag("outcome", tag(outcome))
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry));
+            }
+            upstreamTimers.put(upstream, byOutcome);
+
+            final Map<Rejection, Counter> byRejection = new EnumMap<>(Rejection.class);
+            for (final Rejection rejection : Rejection.values()) {
+                byRejection.put(rejection, Counter.builder("duckai.upstream.rejected")
+                    .description("Calls to upstream APIs refused before they were made")
+                    .tag("upstream", upstream.key())
+                    .tag("reason", tag(rejection))
+                    .register(registry));
+            }
+            rejectionCounters.put(upstream, byRejection);
+
+            final Map<CircuitBreaker.State, Counter> byState = new EnumMap<>(CircuitBreaker.State.class);
+            for (final CircuitBreaker.State state : CircuitBreaker.State.values()) {
+                byState.put(state, Counter.builder("duckai.upstream.circuit.transitions")
+                    .description("Circuit breaker transitions, by the state entered")
+                    .tag("upstream", upstream.key())
+                    .tag("state", tag(state))
+                    .register(registry));
+            }
+            transitionCounters.put(upstream, byState);
+        }
+    }
+
+    /**
+     * Registers one gauge per state for the circuit breaker of the upstream, which is 1 for the
+     * current state and 0 for the others.
+     */
+    public void bindCircuitBreaker(final Upstream upstream, final CircuitBreaker breaker) {
+        for (final CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder("duckai.upstream.circuit.state", breaker, b -> b.state() == state ? 1 : 0)
+                .description("Current state of the circuit breaker of an upstream API")
+                .tag("upstream", upstream.key())
+                .tag("state", tag(state))
+                .register(registry);
+        }
+    }
+
+    public void recordStage(final Stage stage, final long nanos) {
+        stageTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void countResponse(final ResponseSourceType source, final WebSearchType type, final Outcome outcome) {
+        responseCounters.get(source).get(type).get(outcome).increment();
+    }
+
+    public void recordUpstreamCall(final Upstream upstream, final UpstreamOutcome outcome, final long nanos) {
+        upstreamTimers.get(upstream).get(outcome).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void countRejectedCall(final Upstream upstream, final Rejection rejection) {
+        rejectionCounters.get(upstream).get(rejection).increment();
+    }
+
+    public void countCircuitTransition(final Upstream upstream, final CircuitBreaker.State to) {
+        transitionCounters.get(upstream).get(to).increment();
+    }
+
+    private static String tag(final Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,41 @@
+package no.mattikj.mkd.duckai.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import no.mattikj.mkd.duckai.service.ScenarioResponderEngine;
+
+/**
+ * Gauges of the scenario index. All are read from the index published at scrape time, so they
+ * follow every reload without being updated explicitly.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Component
+@RequiredArgsConstructor
+public class ScenarioIndexMetrics implements MeterBinder {
+
+    private final ScenarioResponderEngine engine;
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("duckai.scenarios", engine, ScenarioResponderEngine::scenarioCount)
+            .description("Scenarios in the index")
+            .register(registry);
+
+        Gauge.builder("duckai.index.memory", engine, ScenarioResponderEngine::indexMemoryBytes)
+            .description("Estimated heap retained by the scenario index")
+            .baseUnit("bytes")
+            .register(registry);
+
+        Gauge.builder("duckai.index.off-heap", engine, ScenarioResponderEngine::indexOffHeapBytes)
+            .description("Direct memory reserved for scenario answers stored off the heap")
+            .baseUnit("bytes")
+            .register(registry);
+    }
+}
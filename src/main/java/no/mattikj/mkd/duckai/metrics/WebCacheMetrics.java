@@ -0,0 +1,31 @@
+package no.mattikj.mkd.duckai.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import no.mattikj.mkd.duckai.cache.WebResponseCache;
+
+/**
+ * Meters of the web response cache. The counters are read from the cache at scrape time, so
+ * the cache keeps no reference to the registry.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Component
+@RequiredArgsConstructor
+public class WebCacheMetrics implements MeterBinder {
+
+    private final WebResponseCache webResponseCache;
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("duckai.web.coalesced", webResponseCache, WebResponseCache::coalescedCount)
+            .description("Web lookups that joined a fetch already in flight for the same key")
+            .register(registry);
+    }
+}
@@ -0,0 +1,46 @@
+package no.mattikj.mkd.duckai.resilience;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the number of concurrent calls to an external API. A call over the cap is refused at
+ * once instead of queued, so a slow API cannot tie up more than its share of threads.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final Semaphore permits;
+
+    public Bulkhead(final String name, final int maxConcurrentCalls) {
+        this.name = name;
+        this.maxConcurrentCalls = Math.max(1, maxConcurrentCalls);
+        this.permits = new Semaphore(this.maxConcurrentCalls);
+    }
+
+    /**
+     * Takes a permit if one is free. Every permit taken must be given back with {@link #release()}.
+     */
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    public int maxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public String name() {
+        return name;
+    }
+}
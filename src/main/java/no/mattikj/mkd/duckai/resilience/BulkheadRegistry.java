@@ -0,0 +1,37 @@
+package no.mattikj.mkd.duckai.resilience;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import no.mattikj.mkd.duckai.domain.Upstream;
+
+/**
+ * Holds one bulkhead per external API, configured through
+ * {@code duckai.bulkhead.<upstream>.max-concurrent-calls}.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Component
+public class BulkheadRegistry {
+
+    private static final String PREFIX = "duckai.bulkhead.";
+
+    private final Map<Upstream, Bulkhead> bulkheads = new EnumMap<>(Upstream.class);
+
+    public BulkheadRegistry(final Environment environment) {
+        for (final Upstream upstream : Upstream.values()) {
+            bulkheads.put(upstream, new Bulkhead(
+                upstream.key(),
+                environment.getProperty(PREFIX + upstream.key() + ".max-concurrent-calls", Integer.class, 20)
+            ));
+        }
+    }
+
+    public Bulkhead get(final Upstream upstream) {
+        return bulkheads.get(upstream);
+    }
+}
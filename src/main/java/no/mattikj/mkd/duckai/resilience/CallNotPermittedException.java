@@ -0,0 +1,14 @@
+package no.mattikj.mkd.duckai.resilience;
+
+/**
+ * Thrown when a call to an external API is refused by its open circuit or full bulkhead.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public class CallNotPermittedException extends RuntimeException {
+
+    public CallNotPermittedException(final String message) {
+        super(message);
+    }
+}
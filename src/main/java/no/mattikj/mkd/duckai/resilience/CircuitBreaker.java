@@ -0,0 +1,239 @@
+package no.mattikj.mkd.duckai.resilience;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker over the results of the most recent calls to an external API.
+ * <p>
+ * While closed, every call is permitted and its result is kept in a sliding window of the last
+ * {@code windowSize} calls. Once the window holds at least {@code minimumCalls} results and the
+ * share of failed or slow calls reaches its threshold, the circuit opens. An open circuit refuses
+ * every call without taking a lock, until the open duration has passed. It then turns half-open
+ * and lets {@code halfOpenCalls} trial calls through: if their results stay below the thresholds
+ * the circuit closes with an empty window, otherwise it opens again.
+ * <p>
+ * Every permitted call must be released once it is done, whether it produced a result or not,
+ * so a half-open trial that never reached the API frees its slot for another one.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * @param windowSize            the number of most recent calls the rates are computed over
+     * @param minimumCalls          the number of calls in the window before the circuit may open
+     * @param failureRateThreshold  the share of failed calls that opens the circuit
+     * @param slowCallRateThreshold the share of slow calls that opens the circuit
+     * @param slowCallMillis        the duration from which a call counts as slow
+     * @param openMillis            how long the circuit stays open before it turns half-open
+     * @param halfOpenCalls         the number of trial calls while half-open
+     */
+    public record Settings(
+        int windowSize,
+        int minimumCalls,
+        double failureRateThreshold,
+        double slowCallRateThreshold,
+        long slowCallMillis,
+        long openMillis,
+        int halfOpenCalls
+    ) {
+    }
+
+    /**
+     * A change of state, passed to every listener after the change.
+     */
+    public record Transition(String name, State from, State to) {
+    }
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+    private final List<Consumer<Transition>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The result of every call in the window: bit 0 is set for a failed call, bit 1 for a slow one.
+     */
+    private final byte[] window;
+    private int position;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openUntilNanos;
+    private int trialsInFlight;
+    private int trialResults;
+    private int trialFailures;
+    private int trialSlowCalls;
+
+    public CircuitBreaker(final String name, final Settings settings) {
+        this(name, settings, System::nanoTime);
+    }
+
+    /**
+     * @param clock the time source in nanoseconds, replaceable in tests
+     */
+    public CircuitBreaker(final String name, final Settings settings, final LongSupplier clock) {
+        this.name = name;
+        this.window = new byte[Math.max(1, settings.windowSize())];
+        this.minimumCalls = Math.max(1, Math.min(settings.minimumCalls(), window.length));
+        this.failureRateThreshold = settings.failureRateThreshold();
+        this.slowCallRateThreshold = settings.slowCallRateThreshold();
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, settings.slowCallMillis()));
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, settings.openMillis()));
+        this.halfOpenCalls = Math.max(1, settings.halfOpenCalls());
+        this.clock = clock;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    public void onTransition(final Consumer<Transition> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns whether a call may be made now. Every permitted call must be followed by
+     * {@link #releasePermission()}.
+     */
+    public boolean tryAcquirePermission() {
+        final State current = state;
+        if (current == State.CLOSED) return true;
+        if (current == State.OPEN && clock.getAsLong() - openUntilNanos < 0) return false;
+
+        Transition transition = null;
+        final boolean permitted;
+        synchronized (this) {
+            if (state == State.OPEN && clock.getAsLong() - openUntilNanos >= 0) {
+                transition = transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                permitted = trialsInFlight + trialResults < halfOpenCalls;
+                if (permitted) {
+                    trialsInFlight++;
+                }
+            } else {
+                permitted = state == State.CLOSED;
+            }
+        }
+        notifyListeners(transition);
+        return permitted;
+    }
+
+    /**
+     * Ends a permitted call. Only half-open trials need releasing, but calling it after every
+     * permitted call keeps the callers simple.
+     */
+    public void releasePermission() {
+        if (state != State.HALF_OPEN) return;
+
+        synchronized (this) {
+            if (state == State.HALF_OPEN && trialsInFlight > 0) {
+                trialsInFlight--;
+            }
+        }
+    }
+
+    /**
+     * Records the result of a call that reached the API.
+     */
+    public void onResult(final long durationNanos, final boolean failed) {
+        final boolean slow = durationNanos >= slowCallNanos;
+        Transition transition = null;
+        synchronized (this) {
+            switch (state) {
+                case CLOSED -> {
+                    record(failed, slow);
+                    if (recorded >= minimumCalls && exceedsThresholds(failures, slowCalls, recorded)) {
+                        transition = transitionTo(State.OPEN);
+                    }
+                }
+                case HALF_OPEN -> {
+                    trialResults++;
+                    trialFailures += failed ? 1 : 0;
+                    trialSlowCalls += slow ? 1 : 0;
+                    if (exceedsThresholds(trialFailures, trialSlowCalls, trialResults)) {
+                        transition = transitionTo(State.OPEN);
+                    } else if (trialResults >= halfOpenCalls) {
+                        transition = transitionTo(State.CLOSED);
+                    }
+                }
+                case OPEN -> {
+                    // Calls permitted before the circuit opened say nothing new
+                }
+            }
+        }
+        notifyListeners(transition);
+    }
+
+    private void record(final boolean failed, final boolean slow) {
+        if (recorded == window.length) {
+            failures -= window[position] & 1;
+            slowCalls -= window[position] >> 1;
+        } else {
+            recorded++;
+        }
+        window[position] = (byte) ((failed ? 1 : 0) | (slow ? 2 : 0));
+        failures += failed ? 1 : 0;
+        slowCalls += slow ? 1 : 0;
+        position = (position + 1) % window.length;
+    }
+
+    /**
+     * A half-open circuit reopens as soon as the failed trials alone reach the threshold of all
+     * trials, so a failing API gets no more trial calls than needed.
+     */
+    private boolean exceedsThresholds(final int failed, final int slow, final int calls) {
+        final int total = state == State.HALF_OPEN ? halfOpenCalls : calls;
+        return failed > 0 && failed >= failureRateThreshold * total
+               || slow > 0 && slow >= slowCallRateThreshold * total;
+    }
+
+    private Transition transitionTo(final State to) {
+        final State from = state;
+        if (to == State.OPEN) {
+            openUntilNanos = clock.getAsLong() + openNanos;
+        }
+        if (to == State.CLOSED) {
+            position = 0;
+            recorded = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+        trialsInFlight = 0;
+        trialResults = 0;
+        trialFailures = 0;
+        trialSlowCalls = 0;
+        state = to;
+        return new Transition(name, from, to);
+    }
+
+    private void notifyListeners(final Transition transition) {
+        if (transition == null) return;
+
+        for (final Consumer<Transition> listener : listeners) {
+            listener.accept(transition);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package no.mattikj.mkd.duckai.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import no.mattikj.mkd.duckai.domain.Upstream;
+import no.mattikj.mkd.duckai.metrics.DuckAiMetrics;
+
+/**
+ * Holds one circuit breaker per external API, configured through
+ * {@code duckai.circuit-breaker.<upstream>.window-size}, {@code .minimum-calls},
+ * {@code .failure-rate-threshold}, {@code .slow-call-rate-threshold}, {@code .slow-call-ms},
+ * {@code .open-ms} and {@code .half-open-calls}.
+ * <p>
+ * Every state transition is logged, counted and published as a {@link CircuitBreaker.Transition}
+ * application event, named after the key of the upstream.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Component
+public class CircuitBreakerRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreakerRegistry.class);
+    private static final String PREFIX = "duckai.circuit-breaker.";
+
+    private final Map<Upstream, CircuitBreaker> breakers = new EnumMap<>(Upstream.class);
+
+    public CircuitBreakerRegistry(
+        final Environment environment,
+        final ApplicationEventPublisher eventPublisher,
+        final DuckAiMetrics metrics
+    ) {
+        for (final Upstream upstream : Upstream.values()) {
+            final String prefix = PREFIX + upstream.key() + ".";
+            final CircuitBreaker breaker = new CircuitBreaker(upstream.key(), new CircuitBreaker.Settings(
+                environment.getProperty(prefix + "window-size", Integer.class, 20),
+                environment.getProperty(prefix + "minimum-calls", Integer.class, 10),
+                environment.getProperty(prefix + "failure-rate-threshold", Double.class, 0.5),
+                environment.getProperty(prefix + "slow-call-rate-threshold", Double.class, 0.8),
+                environment.getProperty(prefix + "slow-call-ms", Long.class, 2000L),
+                environment.getProperty(prefix + "open-ms", Long.class, 30_000L),
+                environment.getProperty(prefix + "half-open-calls", Integer.class, 3)
+            ));
+
+            breaker.onTransition(transition -> {
+                if (transition.to() == CircuitBreaker.State.OPEN) {
+                    LOG.warn("Circuit for {} opened after {}", transition.name(), transition.from());
+                } else {
+                    LOG.info("Circuit for {} changed from {} to {}", transition.name(), transition.from(), transition.to());
+                }
+                metrics.countCircuitTransition(upstream, transition.to());
+                eventPublisher.publishEvent(transition);
+            });
+            metrics.bindCircuitBreaker(upstream, breaker);
+            breakers.put(upstream, breaker);
+        }
+    }
+
+    public CircuitBreaker get(final Upstream upstream) {
+        return breakers.get(upstream);
+    }
+}
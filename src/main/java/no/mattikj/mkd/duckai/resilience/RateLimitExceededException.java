@@ -0,0 +1,14 @@
+package no.mattikj.mkd.duckai.resilience;
+
+/**
+ * Thrown when a rate limiter cannot hand out a permit within the maximum wait time.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    public RateLimitExceededException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,45 @@
+package no.mattikj.mkd.duckai.resilience;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import no.mattikj.mkd.duckai.domain.Upstream;
+
+/**
+ * Holds one rate limiter per external API, configured through
+ * {@code duckai.rate-limit.<upstream>.interval-ms}, {@code .burst} and {@code .max-wait-ms}.
+ * The Wikipedia interval falls back to the older {@code duckai.rate-limit.ms} property.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Component
+public class RateLimiterRegistry {
+
+    private static final String PREFIX = "duckai.rate-limit.";
+
+    private final Map<Upstream, TokenBucketRateLimiter> limiters = new EnumMap<>(Upstream.class);
+
+    public RateLimiterRegistry(final Environment environment) {
+        for (final Upstream upstream : Upstream.values()) {
+            final String prefix = PREFIX + upstream.key() + ".";
+            final long defaultInterval = upstream == Upstream.WIKIPEDIA
+                ? environment.getProperty(PREFIX + "ms", Long.class, 1000L)
+                : 1000L;
+
+            limiters.put(upstream, new TokenBucketRateLimiter(
+                upstream.key(),
+                environment.getProperty(prefix + "interval-ms", Long.class, defaultInterval),
+                environment.getProperty(prefix + "burst", Integer.class, 1),
+                environment.getProperty(prefix + "max-wait-ms", Long.class, 3000L)
+            ));
+        }
+    }
+
+    public TokenBucketRateLimiter get(final Upstream upstream) {
+        return limiters.get(upstream);
+    }
+}
@@ -0,0 +1,89 @@
+package no.mattikj.mkd.duckai.resilience;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limiter that never blocks the calling thread.
+ * <p>
+ * One permit is added every {@code interval}, and up to {@code burst} permits can be used at
+ * once. Permits are reserved with a single compare-and-set on the time the next permit becomes
+ * free, so concurrent callers always get distinct slots. A caller that has to wait gets a future
+ * that completes when its slot arrives. If the slot is further away than the maximum wait, the
+ * permit is refused instead of queued.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public class TokenBucketRateLimiter {
+
+    private final String name;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final long maxWaitNanos;
+    private final LongSupplier clock;
+    private final AtomicLong nextFreeNanos;
+
+    public TokenBucketRateLimiter(final String name, final long intervalMillis, final int burst,
+                                  final long maxWaitMillis) {
+        this(name, intervalMillis, burst, maxWaitMillis, System::nanoTime);
+    }
+
+    /**
+     * @param clock the time source in nanoseconds, replaceable in tests
+     */
+    public TokenBucketRateLimiter(final String name, final long intervalMillis, final int burst,
+                                  final long maxWaitMillis, final LongSupplier clock) {
+        this.name = name;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, intervalMillis));
+        this.burstNanos = intervalNanos * (Math.max(1, burst) - 1);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+        this.clock = clock;
+        this.nextFreeNanos = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Reserves a permit.
+     *
+     * @return the nanoseconds to wait before the permit may be used, or {@code -1} if the wait
+     * would be longer than the maximum wait and no permit was reserved
+     */
+    public long reserve() {
+        while (true) {
+            final long now = clock.getAsLong();
+            final long nextFree = nextFreeNanos.get();
+            final long permittedAt = Math.max(now, nextFree - burstNanos);
+            final long wait = permittedAt - now;
+            if (wait > maxWaitNanos) return -1;
+
+            final long newNextFree = Math.max(nextFree, now) + intervalNanos;
+            if (nextFreeNanos.compareAndSet(nextFree, newNextFree)) {
+                return wait;
+            }
+        }
+    }
+
+    /**
+     * Returns a future that completes when a permit is available, without parking the caller.
+     * The future fails with a {@link RateLimitExceededException} if no permit can be reserved
+     * within the maximum wait.
+     */
+    public CompletableFuture<Void> acquire() {
+        final long wait = reserve();
+        if (wait < 0) {
+            return CompletableFuture.failedFuture(
+                new RateLimitExceededException("Rate limit for " + name + " exceeded"));
+        }
+        if (wait == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {
+        }, CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS));
+    }
+
+    public String name() {
+        return name;
+    }
+}
@@ -0,0 +1,25 @@
+package no.mattikj.mkd.duckai.resilience;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an external API answers a call with a 4xx status other than 429. The API is
+ * healthy and has answered, typically that there is nothing for the query, so the call does
+ * not count as a failure towards its circuit breaker or health.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public class UpstreamClientErrorException extends IOException {
+
+    private final int status;
+
+    public UpstreamClientErrorException(final int status, final String url) {
+        super("HTTP " + status + " while calling " + url);
+        this.status = status;
+    }
+
+    public int status() {
+        return status;
+    }
+}
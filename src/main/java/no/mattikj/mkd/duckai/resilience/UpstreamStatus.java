@@ -0,0 +1,30 @@
+package no.mattikj.mkd.duckai.resilience;
+
+import no.mattikj.mkd.duckai.metrics.DuckAiMetrics.UpstreamOutcome;
+
+/**
+ * The result of the latest HTTP call to an external API, and the number of failed calls in a
+ * row up to it. Client errors, such as a 404 for an unknown topic, end a run of failures.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+public record UpstreamStatus(
+    UpstreamOutcome lastOutcome,
+    long lastCallAtMillis,
+    int consecutiveFailures
+) {
+
+    public static final UpstreamStatus UNKNOWN = new UpstreamStatus(null, -1, 0);
+
+    /**
+     * Returns the status after a call with the given outcome.
+     */
+    public UpstreamStatus next(final UpstreamOutcome outcome, final long calledAtMillis) {
+        return new UpstreamStatus(
+            outcome,
+            calledAtMillis,
+            outcome.isFailure() ? consecutiveFailures + 1 : 0
+        );
+    }
+}
@@ -0,0 +1,98 @@
+package no.mattikj.mkd.duckai.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import lombok.RequiredArgsConstructor;
+import no.mattikj.mkd.duckai.dto.ImportProgress;
+import no.mattikj.mkd.duckai.dto.LearnItemResult;
+import no.mattikj.mkd.duckai.dto.PromptLearnRequest;
+
+/**
+ * Imports learned scenarios from a stream, without reading the whole stream into memory.
+ * <p>
+ * The stream is either newline-delimited JSON with one scenario per line, or a single JSON
+ * array of scenarios. It is parsed one scenario at a time, and every
+ * {@code duckai.learn.batch-size} scenarios are stored and indexed as one batch, so memory use
+ * does not grow with the size of the import.
+ *
+ * @author Matti Kjellstadli
+ * @version 1.2.0
+ */
+@Service
+@RequiredArgsConstructor
+public class ScenarioImportService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScenarioImportService.class);
+    private final ScenarioResponderEngine scenarioResponderEngine;
+    private final ObjectMapper objectMapper;
+
+    @Value("${duckai.learn.batch-size:1000}")
+    private int batchSize = 1000;
+
+    /**
+     * Imports all scenarios in the stream. Parsing stops at the first malformed record; the
+     * scenarios stored before it are kept.
+     *
+     * @param onProgress receives the progress after every stored batch
+     * @return the final progress of the import
+     */
+    public ImportProgress importScenarios(final InputStream input, final Consumer<ImportProgress> onProgress) {
+        final List<PromptLearnRequest> batch = new ArrayList<>(batchSize);
+        final long[] counts = new long[3];
+        String error = null;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+
+            while (token != null && token != JsonToken.END_ARRAY) {
+                batch.add(objectMapper.readValue(parser, PromptLearnRequest.class));
+                counts[0]++;
+                if (batch.size() == batchSize) {
+                    learnBatch(batch, counts, onProgress);
+                }
+                token = parser.nextToken();
+            }
+        } catch (final IOException e) {
+            LOG.warn("Scenario import stopped after {} records: {}", counts[0], e.getMessage());
+            error = "Malformed record after " + counts[0] + " records";
+        }
+
+        if (!batch.isEmpty()) {
+            learnBatch(batch, counts, onProgress);
+        }
+
+        final ImportProgress result = new ImportProgress(counts[0], counts[1], counts[2], true, error);
+        onProgress.accept(result);
+        return result;
+    }
+
+    private void learnBatch(
+        final List<PromptLearnRequest> batch,
+        final long[] counts,
+        final Consumer<ImportProgress> onProgress
+    ) {
+        final List<LearnItemResult> results = scenarioResponderEngine.learnScenariosInBulk(batch);
+        final long learned = results.stream().filter(LearnItemResult::isLearned).count();
+        counts[1] += learned;
+        counts[2] += results.size() - learned;
+        batch.clear();
+
+        onProgress.accept(new ImportProgress(counts[0], counts[1], counts[2], false, null));
+    }
+}
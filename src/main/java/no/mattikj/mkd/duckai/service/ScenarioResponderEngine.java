@@ -1,23 +1,52 @@
 package no.mattikj.mkd.duckai.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
-import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import no.mattikj.mkd.duckai.cache.PromptResponseCache;
 import no.mattikj.mkd.duckai.domain.ResponseSourceType;
 import no.mattikj.mkd.duckai.domain.Scenario;
 import no.mattikj.mkd.duckai.domain.ScenarioItem;
+import no.mattikj.mkd.duckai.domain.ScenarioMatch;
+import no.mattikj.mkd.duckai.domain.SparseVector;
 import no.mattikj.mkd.duckai.domain.WebSearchType;
+import no.mattikj.mkd.duckai.dto.LearnItemResult;
 import no.mattikj.mkd.duckai.dto.PromptLearnRequest;
 import no.mattikj.mkd.duckai.dto.PromptResponse;
+import no.mattikj.mkd.duckai.dto.ScenarioSuggestion;
+import no.mattikj.mkd.duckai.index.AnswerStore;
+import no.mattikj.mkd.duckai.index.IndexSnapshot;
+import no.mattikj.mkd.duckai.index.LshRecallReport;
+import no.mattikj.mkd.duckai.index.MinHashLsh;
+import no.mattikj.mkd.duckai.index.ScenarioIndex;
+import no.mattikj.mkd.duckai.index.ScoringMode;
+import no.mattikj.mkd.duckai.index.TermDictionary;
+import no.mattikj.mkd.duckai.index.Tokenizer;
+import no.mattikj.mkd.duckai.metrics.DuckAiMetrics;
+import no.mattikj.mkd.duckai.metrics.DuckAiMetrics.Outcome;
+import no.mattikj.mkd.duckai.metrics.DuckAiMetrics.Stage;
 
 /**
  * ScenarioResponder class that simulates a simple AI with humorous responses.
@@ -30,37 +59,362 @@ import no.mattikj.mkd.duckai.dto.PromptResponse;
 @RequiredArgsConstructor
 public class ScenarioResponderEngine {
 
+    private static final Logger LOG = LoggerFactory.getLogger(ScenarioResponderEngine.class);
     private static final double SIMILARITY_THRESHOLD = 0.45;
-    private final List<ScenarioItem> memory = new CopyOnWriteArrayList<>();
+    private static final String FALLBACK_RESPONSE = "I have no idea how to respond to that yet.";
     private final ScenarioService scenarioService;
     private final WebSearchEngine webSearchEngine;
+    private final PromptResponseCache responseCache;
+    private final DuckAiMetrics metrics;
 
-    private static final Set<String> STOPWORDS = Set.of(
+    private static final Tokenizer TOKENIZER = Tokenizer.words(Set.of(
         "the", "is", "a", "an", "and", "or", "what", "how", "are"
-    );
+    ));
 
-    @PostConstruct
+    @Value("${duckai.reload.full-rebuild-every:12}")
+    private int fullRebuildEvery = 12;
+
+    @Value("${duckai.scoring.mode:COSINE}")
+    private volatile ScoringMode scoringMode = ScoringMode.COSINE;
+
+    @Value("${duckai.scoring.bm25-threshold:0.35}")
+    private double bm25Threshold = 0.35;
+
+    @Value("${duckai.search.shards:0}")
+    private int shards = 0;
+
+    @Value("${duckai.search.parallel-min-candidates:50000}")
+    private int parallelMinCandidates = 50_000;
+
+    @Value("${duckai.index.off-heap-answers:false}")
+    private boolean offHeapAnswers = false;
+
+    @Value("${duckai.lsh.enabled:false}")
+    private boolean lshEnabled = false;
+
+    @Value("${duckai.lsh.bands:20}")
+    private int lshBands = 20;
+
+    @Value("${duckai.lsh.rows:3}")
+    private int lshRows = 3;
+
+    @Value("${duckai.lsh.threshold:0.7}")
+    private double lshThreshold = 0.7;
+
+    @Value("${duckai.suggestions.min-score:0.2}")
+    private double suggestionMinScore = 0.2;
+
+    @Value("${duckai.suggestions.max-limit:10}")
+    private int suggestionMaxLimit = 10;
+
+    @Value("${duckai.hedge.enabled:false}")
+    private boolean hedgeEnabled = false;
+
+    @Value("${duckai.hedge.uncertain-band:0.1}")
+    private double uncertainBand = 0.1;
+
+    @Value("${duckai.hedge.latency-budget-ms:1500}")
+    private long latencyBudgetMillis = 1500;
+
+    @Value("${duckai.snapshot.path:}")
+    private String snapshotPath = "";
+
+    private final Lock reloadLock = new ReentrantLock();
+    private final Lock publishLock = new ReentrantLock();
+    private final Map<Long, ScenarioItem> learnedSinceReload = new HashMap<>();
+    private volatile ScenarioIndex index = new ScenarioIndex();
+    private long lastLoadedVersion;
+    private int reloadsSinceFullRebuild;
+    private volatile boolean indexReady;
+    private volatile long lastReloadDurationMillis = -1;
+    private volatile long lastReloadCompletedAtMillis = -1;
+
+    /**
+     * Builds the first index once the application has started. The server already answers
+     * liveness probes while the index is built, but readiness stays down until it is done.
+     * <p>
+     * With {@code duckai.snapshot.path} set, the index is read from the snapshot written after
+     * the last reload, and only scenarios inserted or updated after it are loaded from the
+     * database. Rows deleted since the snapshot are dropped by the next full rebuild.
+     */
+    @EventListener(ApplicationReadyEvent.class)
     public void init() {
-        reloadScenarios();
+        if (restoreSnapshot()) {
+            reloadChangedScenarios();
+        } else {
+            reloadScenarios();
+        }
     }
 
+    /**
+     * Loads new and changed scenarios on every run, and rebuilds the whole index every
+     * {@code duckai.reload.full-rebuild-every} runs to drop rows deleted in the database.
+     * Nothing is loaded before {@link #init()} has built the first index.
+     */
     @Scheduled(fixedRateString = "${duckai.reload-interval-ms:300000}")
     public void scheduledReload() {
-        reloadScenarios();
+        if (!indexReady) return;
+
+        if (++reloadsSinceFullRebuild >= fullRebuildEvery) {
+            reloadScenarios();
+        } else {
+            reloadChangedScenarios();
+        }
     }
 
+    /**
+     * Rebuilds the index from all stored scenarios. The new index is built next to the current
+     * one and published in one step, so requests never see an empty or half-filled index.
+     */
     public void reloadScenarios() {
-        memory.clear();
+        reloadLock.lock();
+        try {
+            final long startedAt = System.nanoTime();
+            final ScenarioIndex rebuilt = newIndex();
+            final Set<Long> learnedBeforeScan;
+            publishLock.lock();
+            try {
+                learnedBeforeScan = new HashSet<>(learnedSinceReload.keySet());
+            } finally {
+                publishLock.unlock();
+            }
+            final AtomicLong maxVersion = new AtomicLong();
+            scenarioService.forEachScenarioChangedAfter(0L, scenario -> {
+                rebuilt.add(toScenarioItem(scenario, rebuilt));
+                if (scenario.version() != null) {
+                    maxVersion.set(scenario.version());
+                }
+            });
+
+            publishLock.lock();
+            try {
+                final long rebuiltUpTo = Math.max(lastLoadedVersion, maxVersion.get());
+
+                // Scenarios learned before the scan were committed, so the scan loaded them or a
+                // newer version of them; only those learned meanwhile may be missing
+                learnedSinceReload.forEach((version, item) -> {
+                    if (!learnedBeforeScan.contains(version)) {
+                        rebuilt.add(new ScenarioItem(
+                            item.prompt(),
+                            rebuilt.answers().store(item.response()),
+                            vectorizeForIndex(item.prompt(), rebuilt.dictionary())
+                        ));
+                    }
+                });
+                learnedSinceReload.keySet().removeIf(version -> version <= rebuiltUpTo);
+                rebuilt.refreshStatistics();
+
+                index = rebuilt;
+                lastLoadedVersion = rebuiltUpTo;
+                responseCache.invalidateAll();
+            } finally {
+                publishLock.unlock();
+            }
+            reloadsSinceFullRebuild = 0;
+            reloadCompleted(startedAt);
+            indexReady = true;
+            writeSnapshot();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
 
-        final List<Scenario> recentScenarios = scenarioService.loadScenarios();
+    /**
+     * Adds the scenarios inserted or updated since the last reload to the current index in one
+     * batch, replacing the indexed answers of updated ones. Scenarios learned through this
+     * instance are already indexed and are skipped.
+     */
+    public void reloadChangedScenarios() {
+        reloadLock.lock();
+        try {
+            final long startedAt = System.nanoTime();
+            final List<Scenario> scenarios = new ArrayList<>();
+            scenarioService.forEachScenarioChangedAfter(lastLoadedVersion, scenarios::add);
+            if (scenarios.isEmpty()) {
+                reloadCompleted(startedAt);
+                return;
+            }
 
-        recentScenarios.forEach(s -> memory.add(
-            new ScenarioItem(
-                s.question(),
-                s.answer(),
-                vectorize(s.question())
-            )
-        ));
+            publishLock.lock();
+            try {
+                final ScenarioIndex current = index;
+                final List<ScenarioItem> notIndexed = scenarios.stream()
+                    .filter(s -> s.version() == null || learnedSinceReload.remove(s.version()) == null)
+                    .map(s -> toScenarioItem(s, current))
+                    .toList();
+
+                current.addAll(notIndexed);
+                lastLoadedVersion = Math.max(lastLoadedVersion, maxVersion(scenarios));
+                if (!notIndexed.isEmpty()) {
+                    responseCache.invalidateAll();
+                }
+            } finally {
+                publishLock.unlock();
+            }
+            reloadCompleted(startedAt);
+            writeSnapshot();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Publishes the index stored in the snapshot, if there is a readable one.
+     */
+    private boolean restoreSnapshot() {
+        final Path path = snapshotFile();
+        if (path == null || !Files.isRegularFile(path)) return false;
+
+        reloadLock.lock();
+        try {
+            final long startedAt = System.nanoTime();
+            final ScenarioIndex restored = newIndex();
+            final long maxVersion;
+            try {
+                maxVersion = IndexSnapshot.read(path, restored);
+                restored.refreshStatistics();
+            } catch (final IOException | RuntimeException e) {
+                // Nothing is published yet, so the full load can always take over
+                LOG.warn("Could not read index snapshot, rebuilding from the database: {}", e.getMessage());
+                return false;
+            }
+
+            publishLock.lock();
+            try {
+                index = restored;
+                lastLoadedVersion = maxVersion;
+                responseCache.invalidateAll();
+            } finally {
+                publishLock.unlock();
+            }
+            reloadCompleted(startedAt);
+            indexReady = true;
+            return true;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the snapshot with the current index. Called with the reload lock held, so no
+     * reload changes {@code lastLoadedVersion} meanwhile.
+     */
+    private void writeSnapshot() {
+        final Path path = snapshotFile();
+        if (path == null) return;
+
+        try {
+            IndexSnapshot.write(path, index, lastLoadedVersion);
+        } catch (final IOException e) {
+            LOG.warn("Could not write index snapshot: {}", e.getMessage());
+        }
+    }
+
+    private Path snapshotFile() {
+        return snapshotPath == null || snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+    }
+
+    private ScenarioIndex newIndex() {
+        return new ScenarioIndex(
+            searchShards(),
+            parallelMinCandidates,
+            lshEnabled ? new MinHashLsh(lshBands, lshRows) : null,
+            offHeapAnswers ? AnswerStore.offHeap() : AnswerStore.onHeap()
+        );
+    }
+
+    public int scenarioCount() {
+        return index.size();
+    }
+
+    /**
+     * Returns whether the first index has been fully built. Until then, prompts are answered
+     * from an empty index.
+     */
+    public boolean isIndexReady() {
+        return indexReady;
+    }
+
+    /**
+     * Returns how long the last completed reload took, or -1 if none has completed yet.
+     */
+    public long lastReloadDurationMillis() {
+        return lastReloadDurationMillis;
+    }
+
+    /**
+     * Returns the epoch time at which the last reload completed, or -1 if none has completed yet.
+     */
+    public long lastReloadCompletedAtMillis() {
+        return lastReloadCompletedAtMillis;
+    }
+
+    /**
+     * Returns a rough estimate of the heap retained by the current index, in bytes.
+     */
+    public long indexMemoryBytes() {
+        return index.estimatedMemoryBytes();
+    }
+
+    /**
+     * Returns the direct memory reserved for answers of the current index stored off the heap.
+     */
+    public long indexOffHeapBytes() {
+        return index.offHeapBytes();
+    }
+
+    public ScoringMode getScoringMode() {
+        return scoringMode;
+    }
+
+    /**
+     * Switches how scenarios are scored. Takes effect for the next prompt; the index keeps the
+     * statistics of every mode up to date, so nothing needs to be rebuilt. Cached responses are
+     * dropped.
+     */
+    public void setScoringMode(final ScoringMode scoringMode) {
+        if (this.scoringMode == scoringMode) return;
+
+        this.scoringMode = scoringMode;
+        responseCache.invalidateAll();
+    }
+
+    /**
+     * Returns the score a scenario must reach in the given mode. Both cosine modes score
+     * between zero and one in the same way; normalized BM25 scores run lower.
+     */
+    private double similarityThreshold(final ScoringMode mode) {
+        return mode == ScoringMode.BM25 ? bm25Threshold : SIMILARITY_THRESHOLD;
+    }
+
+    private void reloadCompleted(final long startedAt) {
+        lastReloadDurationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        lastReloadCompletedAtMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the number of shards a parallel lookup is split into; zero or less means one per
+     * available processor.
+     */
+    private int searchShards() {
+        return shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+    }
+
+    private ScenarioItem toScenarioItem(final Scenario scenario, final ScenarioIndex target) {
+        return new ScenarioItem(
+            scenario.question(),
+            target.answers().store(scenario.answer()),
+            vectorizeForIndex(scenario.question(), target.dictionary())
+        );
+    }
+
+    private static long maxVersion(final List<Scenario> scenarios) {
+        return scenarios.stream()
+            .map(Scenario::version)
+            .filter(Objects::nonNull)
+            .mapToLong(Long::longValue)
+            .max()
+            .orElse(0L);
     }
 
     /**
@@ -69,37 +423,181 @@ public class ScenarioResponderEngine {
      * Resolution priority:
      * 1. Explicit API types (e.g. JOKE, BOOK) are handled immediately.
      * 2. If no explicit type is detected (OTHER), custom learned scenarios
-     * are evaluated first using cosine similarity.
+     * are evaluated first using cosine similarity. With {@code duckai.lsh.enabled},
+     * scenarios with similarly spelled prompts are tried next, so typos still match.
      * 3. Wikipedia is deliberately used as a final fallback only,
      * ensuring custom prompts are always prioritized over generic knowledge.
+     * <p>
+     * With {@code duckai.hedge.enabled}, the web lookup only gets what is left of the latency
+     * budget. A scenario scoring in the uncertain band just below the threshold is kept as a
+     * candidate, and is returned if the web lookup finds nothing within the budget.
+     * <p>
+     * Responses are cached by normalized prompt until the scenario set or the scoring mode
+     * changes. Jokes, fallback answers and answers that depend on the latency budget are not
+     * cached.
+     * <p>
+     * Every stage is timed, and every response is counted by its source, the type the prompt
+     * was classified as and how it was found.
      */
     public PromptResponse generateResponse(final String prompt) {
         if (prompt == null || prompt.isBlank()) {
             return new PromptResponse("You must speak for me to quack.", ResponseSourceType.LOCAL);
         }
 
-        WebSearchType type = classifyPrompt(prompt);
+        final long startedAt = System.nanoTime();
+        final WebSearchType type = classifyPrompt(prompt);
+        metrics.recordStage(Stage.CLASSIFY, System.nanoTime() - startedAt);
 
-        if (type == WebSearchType.OTHER) {
-            final Map<String, Integer> inputVector = vectorize(prompt);
+        final long generation = responseCache.generation();
+        final PromptResponse cached = responseCache.get(generation, prompt);
+        if (cached != null) {
+            metrics.countResponse(cached.getSource(), type, Outcome.CACHED);
+            return cached;
+        }
+
+        final Resolution resolution = resolveResponse(prompt, type, startedAt);
+        if (resolution.cacheable()) {
+            responseCache.put(generation, prompt, resolution.response());
+        }
+        metrics.countResponse(resolution.response().getSource(), type, resolution.outcome());
+        return resolution.response();
+    }
 
-            final ScenarioItem best = findBestMatch(inputVector);
+    private Resolution resolveResponse(final String prompt, final WebSearchType promptType, final long startedAt) {
+        WebSearchType type = promptType;
+        ScenarioItem uncertainMatch = null;
 
-            if (best != null) {
-                return new PromptResponse(best.response(), ResponseSourceType.LOCAL);
+        if (type == WebSearchType.OTHER) {
+            final ScenarioIndex current = index;
+            long stageStartedAt = System.nanoTime();
+            final SparseVector inputVector = vectorize(prompt, current.dictionary());
+            metrics.recordStage(Stage.VECTORIZE, System.nanoTime() - stageStartedAt);
+
+            final ScoringMode mode = scoringMode;
+            final double threshold = similarityThreshold(mode);
+            // Without hedging, nothing below the threshold is of use, so the index can skip more
+            final double minScore = hedgeEnabled ? threshold - uncertainBand : threshold;
+            stageStartedAt = System.nanoTime();
+            final ScenarioMatch best = current.findBestCandidate(inputVector, mode, minScore);
+            metrics.recordStage(Stage.LOCAL_MATCH, System.nanoTime() - stageStartedAt);
+
+            if (best != null && best.score() >= threshold) {
+                return Resolution.cacheable(
+                    new PromptResponse(best.item().response(), ResponseSourceType.LOCAL),
+                    Outcome.SCENARIO
+                );
+            }
+
+            // A prompt with typos shares few terms with its scenario, but most of its trigrams
+            if (lshEnabled) {
+                stageStartedAt = System.nanoTime();
+                final List<ScenarioMatch> similar = current.findSimilarPrompts(prompt, 1, lshThreshold);
+                metrics.recordStage(Stage.SIMILAR_MATCH, System.nanoTime() - stageStartedAt);
+                if (!similar.isEmpty()) {
+                    return Resolution.cacheable(
+                        new PromptResponse(similar.get(0).item().response(), ResponseSourceType.LOCAL),
+                        Outcome.SIMILAR_PROMPT
+                    );
+                }
+            }
+            if (best != null && best.score() >= threshold - uncertainBand) {
+                uncertainMatch = best.item();
             }
 
             // if best is null, Type has to be WIKI
             type = WebSearchType.WIKI;
         }
 
+        if (hedgeEnabled) {
+            return hedgedWebResponse(prompt, type, uncertainMatch, startedAt);
+        }
 
+        final long fetchStartedAt = System.nanoTime();
         final String summary = webSearchEngine.searchInternetForResponse(prompt, type);
+        metrics.recordStage(Stage.WEB_FETCH, System.nanoTime() - fetchStartedAt);
+        if (summary != null && !summary.isBlank()) {
+            return internetResolution(summary, type);
+        }
+
+        return fallbackResolution();
+    }
+
+    /**
+     * A joke is expected to differ on every request, so it is never cached.
+     */
+    private static Resolution internetResolution(final String summary, final WebSearchType type) {
+        final PromptResponse response = new PromptResponse(summary, ResponseSourceType.INTERNET);
+        return type == WebSearchType.JOKE
+            ? Resolution.uncacheable(response, Outcome.INTERNET)
+            : Resolution.cacheable(response, Outcome.INTERNET);
+    }
+
+    private Resolution fallbackResolution() {
+        final long stageStartedAt = System.nanoTime();
+        final PromptResponse response = new PromptResponse(FALLBACK_RESPONSE, ResponseSourceType.LOCAL);
+        metrics.recordStage(Stage.FALLBACK, System.nanoTime() - stageStartedAt);
+        return Resolution.uncacheable(response, Outcome.FALLBACK);
+    }
+
+    /**
+     * Waits for the web lookup until the latency budget of the request runs out. A lookup that
+     * is still running at the deadline is left to finish in the background, so its response
+     * still ends up in the web response cache.
+     */
+    private Resolution hedgedWebResponse(
+        final String prompt,
+        final WebSearchType type,
+        final ScenarioItem uncertainMatch,
+        final long startedAt
+    ) {
+        final long fetchStartedAt = System.nanoTime();
+        final long remainingNanos = TimeUnit.MILLISECONDS.toNanos(latencyBudgetMillis) - (fetchStartedAt - startedAt);
+        final String summary = remainingNanos <= 0 ? null : webSearchEngine.searchInternetForResponseAsync(prompt, type)
+            .completeOnTimeout(null, remainingNanos, TimeUnit.NANOSECONDS)
+            .join();
+        metrics.recordStage(Stage.WEB_FETCH, System.nanoTime() - fetchStartedAt);
+
         if (summary != null && !summary.isBlank()) {
-            return new PromptResponse(summary, ResponseSourceType.INTERNET);
+            return internetResolution(summary, type);
+        }
+        if (uncertainMatch != null) {
+            return Resolution.uncacheable(
+                new PromptResponse(uncertainMatch.response(), ResponseSourceType.LOCAL),
+                Outcome.UNCERTAIN_MATCH
+            );
         }
 
-        return new PromptResponse("I have no idea how to respond to that yet.", ResponseSourceType.LOCAL);
+        return fallbackResolution();
+    }
+
+    /**
+     * Returns the best scoring scenarios for the prompt, best first, as "did you mean"
+     * alternatives. Unlike {@link #generateResponse}, scenarios below the similarity threshold
+     * are included down to {@code duckai.suggestions.min-score}.
+     */
+    public List<ScenarioSuggestion> suggestScenarios(final String prompt, final int limit) {
+        if (prompt == null || prompt.isBlank() || limit <= 0) return List.of();
+
+        final ScenarioIndex current = index;
+        final SparseVector inputVector = vectorize(prompt, current.dictionary());
+        return current.findTopMatches(inputVector, scoringMode, Math.min(limit, suggestionMaxLimit), suggestionMinScore)
+            .stream()
+            .map(match -> new ScenarioSuggestion(match.item().prompt(), match.score()))
+            .toList();
+    }
+
+    /**
+     * Compares MinHash lookups for a sample of typo'd stored prompts against an exact scan, for
+     * the configured bands and rows and a few alternatives. Scans all scenarios once per sample.
+     */
+    public List<LshRecallReport.Row> lshReport(final int samples) {
+        final List<String> prompts = index.prompts();
+        final List<String> queries = LshRecallReport.typoQueries(prompts, samples, new Random(samples));
+        final List<int[]> configurations = new ArrayList<>(List.of(
+            new int[]{10, 2}, new int[]{20, 3}, new int[]{32, 4}, new int[]{50, 5}
+        ));
+        configurations.add(new int[]{lshBands, lshRows});
+        return LshRecallReport.evaluate(prompts, queries, configurations);
     }
 
     public WebSearchType classifyPrompt(final String prompt) {
@@ -118,70 +616,85 @@ public class ScenarioResponderEngine {
     }
 
     public int learnScenarios(final List<PromptLearnRequest> promptLearnRequests) {
-        int successCount = 0;
-        for (final PromptLearnRequest request : promptLearnRequests) {
-            if (learn(request)) {
-                successCount++;
-            }
-        }
-        return successCount;
+        return (int) learnScenariosInBulk(promptLearnRequests).stream()
+            .filter(LearnItemResult::isLearned)
+            .count();
     }
 
-    public boolean learn(final PromptLearnRequest request) {
-        final boolean success = scenarioService.addScenario(request);
-        final String prompt = request.getPrompt();
-        memory.add(new ScenarioItem(prompt, request.getAnswer(), vectorize(prompt)));
-        return success;
+    /**
+     * Stores the scenarios in batches, then adds all stored scenarios to the index in one step.
+     *
+     * @return the outcome of every request, in request order
+     */
+    public List<LearnItemResult> learnScenariosInBulk(final List<PromptLearnRequest> promptLearnRequests) {
+        final List<Scenario> stored = new ArrayList<>();
+        final List<LearnItemResult> results = scenarioService.saveScenarios(promptLearnRequests, stored::addAll);
+        indexLearned(stored);
+        return results;
     }
 
-    private ScenarioItem findBestMatch(final Map<String, Integer> inputVector) {
-        double bestScore = 0.0;
-        ScenarioItem bestMatch = null;
-
-        for (final ScenarioItem item : memory) {
-            double score = cosineSimilarity(inputVector, item.vector());
-            if (score > bestScore) {
-                bestScore = score;
-                bestMatch = item;
-            }
-        }
+    public boolean learn(final PromptLearnRequest request) {
+        final Scenario scenario = scenarioService.saveScenario(request);
+        if (scenario == null) return false;
 
-        return bestScore >= SIMILARITY_THRESHOLD ? bestMatch : null;
+        indexLearned(List.of(scenario));
+        return true;
     }
 
-    private Map<String, Integer> vectorize(final String text) {
-        final Map<String, Integer> vector = new HashMap<>();
-
-        final String[] tokens = text.toLowerCase().split("\\W+");
-
-        for (final String token : tokens) {
-            if (!token.isBlank() && !STOPWORDS.contains(token)) {
-                vector.merge(token, 1, Integer::sum);
+    /**
+     * Adds stored scenarios to the current index in one batch, replacing indexed scenarios with
+     * the same normalized prompt, and remembers them so the next reload does not lose them.
+     */
+    private void indexLearned(final List<Scenario> scenarios) {
+        if (scenarios.isEmpty()) return;
+
+        publishLock.lock();
+        try {
+            final ScenarioIndex current = index;
+            final List<ScenarioItem> items = new ArrayList<>(scenarios.size());
+            for (final Scenario scenario : scenarios) {
+                // Every learned scenario replaces an indexed one with the same normalized prompt; its
+                // version lets the next reload skip the row instead of indexing it again
+                final Long version = scenario.version();
+                final ScenarioItem item = toScenarioItem(scenario, current);
+                items.add(item);
+                if (version != null) {
+                    learnedSinceReload.put(version, item);
+                }
             }
+            current.addAll(items);
+            responseCache.invalidateAll();
+        } finally {
+            publishLock.unlock();
         }
+    }
 
-        return vector;
+    /**
+     * Vectorizes a scenario prompt, interning new tokens into the term dictionary of the index.
+     */
+    private SparseVector vectorizeForIndex(final String text, final TermDictionary dictionary) {
+        return TOKENIZER.vectorizeForIndex(text, dictionary);
     }
 
-    private double cosineSimilarity(final Map<String, Integer> v1, final Map<String, Integer> v2) {
-        final Set<String> allKeys = new HashSet<>();
-        allKeys.addAll(v1.keySet());
-        allKeys.addAll(v2.keySet());
+    /**
+     * Vectorizes a user prompt. Tokens unknown to the term dictionary are not interned; they get
+     * a temporary negative id so they still count towards the norm of the prompt vector.
+     */
+    private SparseVector vectorize(final String text, final TermDictionary dictionary) {
+        return TOKENIZER.vectorize(text, dictionary);
+    }
 
-        double dot = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
+    /**
+     * A response, how it was found, and whether it may be served again to the same prompt.
+     */
+    private record Resolution(PromptResponse response, Outcome outcome, boolean cacheable) {
 
-        for (final String key : allKeys) {
-            int a = v1.getOrDefault(key, 0);
-            int b = v2.getOrDefault(key, 0);
-            dot += a * b;
-            norm1 += a * a;
-            norm2 += b * b;
+        private static Resolution cacheable(final PromptResponse response, final Outcome outcome) {
+            return new Resolution(response, outcome, true);
         }
 
-        if (norm1 == 0 || norm2 == 0) return 0.0;
-
-        return dot / (Math.sqrt(norm1) * Math.sqrt(norm2));
+        private static Resolution uncacheable(final PromptResponse response, final Outcome outcome) {
+            return new Resolution(response, outcome, false);
+        }
     }
-}
\ No newline at end of file
+}
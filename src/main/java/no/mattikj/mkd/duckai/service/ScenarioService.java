@@ -1,14 +1,18 @@
 package no.mattikj.mkd.duckai.service;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 import lombok.RequiredArgsConstructor;
 import no.mattikj.mkd.duckai.dao.ScenarioDAO;
 import no.mattikj.mkd.duckai.domain.Scenario;
+import no.mattikj.mkd.duckai.dto.LearnItemResult;
 import no.mattikj.mkd.duckai.dto.PromptLearnRequest;
 import no.mattikj.mkd.duckai.dto.ScenarioDto;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 
 /**
@@ -24,31 +28,132 @@ public class ScenarioService {
     private static final Logger LOG = LoggerFactory.getLogger(ScenarioService.class);
     private final ScenarioDAO scenarioDAO;
 
-    public List<Scenario> loadScenarios() {
-        List<ScenarioDto> dtos = scenarioDAO.getAllScenarios();
-        return dtos.stream().map(dto -> new Scenario(dto.getPrompt(), dto.getAnswer())).collect(Collectors.toList());
+    @Value("${duckai.reload.page-size:5000}")
+    private int pageSize = 5000;
+
+    @Value("${duckai.learn.batch-size:1000}")
+    private int batchSize = 1000;
+
+    /**
+     * Streams the scenarios inserted or updated after the given version to the consumer, ordered
+     * by version, without holding them all in memory.
+     */
+    public void forEachScenarioChangedAfter(final long lastVersion, final Consumer<Scenario> consumer) {
+        scenarioDAO.forEachScenarioChangedAfter(lastVersion, pageSize, dto -> consumer.accept(toScenario(dto)));
     }
 
     public boolean addScenario(final PromptLearnRequest promptLearnRequest) {
+        return saveScenario(promptLearnRequest) != null;
+    }
+
+    /**
+     * Validates, trims and stores a learned scenario. A scenario with the same normalized prompt
+     * as a stored one replaces its answer instead of being stored twice.
+     *
+     * @return the stored scenario, or {@code null} if the request was invalid or nothing was stored
+     */
+    public Scenario saveScenario(final PromptLearnRequest promptLearnRequest) {
+        final ScenarioDto dto = toValidScenarioDto(promptLearnRequest);
+        if (dto == null) return null;
+
+        int rows = scenarioDAO.upsertScenario(dto);
+        return rows > 0 ? toScenario(dto) : null;
+    }
+
+    /**
+     * Validates, trims and stores learned scenarios in batches of {@code duckai.learn.batch-size}.
+     * Every batch is upserted in its own transaction, so a failing batch only fails its own items.
+     *
+     * @param onStored receives the scenarios stored by each batch
+     * @return the outcome of every request, in request order
+     */
+    public List<LearnItemResult> saveScenarios(
+        final List<PromptLearnRequest> promptLearnRequests,
+        final Consumer<List<Scenario>> onStored
+    ) {
+        final List<LearnItemResult> results = new ArrayList<>(promptLearnRequests.size());
+        final List<ScenarioDto> batch = new ArrayList<>(batchSize);
+        final List<Integer> batchIndexes = new ArrayList<>(batchSize);
+
+        for (int i = 0; i < promptLearnRequests.size(); i++) {
+            final ScenarioDto dto = toValidScenarioDto(promptLearnRequests.get(i));
+            if (dto == null) {
+                results.add(LearnItemResult.failed(i, "Prompt and answer must not be empty"));
+                continue;
+            }
+
+            results.add(null);
+            batch.add(dto);
+            batchIndexes.add(i);
+            if (batch.size() == batchSize) {
+                saveBatch(batch, batchIndexes, results, onStored);
+            }
+        }
+        if (!batch.isEmpty()) {
+            saveBatch(batch, batchIndexes, results, onStored);
+        }
+        return results;
+    }
+
+    private void saveBatch(
+        final List<ScenarioDto> batch,
+        final List<Integer> batchIndexes,
+        final List<LearnItemResult> results,
+        final Consumer<List<Scenario>> onStored
+    ) {
+        final List<Scenario> stored = new ArrayList<>(batch.size());
+        try {
+            scenarioDAO.upsertScenarios(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                final ScenarioDto dto = batch.get(i);
+                if (dto.getScenarioId() == null) {
+                    results.set(batchIndexes.get(i), LearnItemResult.failed(batchIndexes.get(i), "Scenario was not stored"));
+                    continue;
+                }
+                final Scenario scenario = toScenario(dto);
+                stored.add(scenario);
+                results.set(batchIndexes.get(i), LearnItemResult.learned(batchIndexes.get(i), scenario.scenarioId()));
+            }
+        } catch (final DataAccessException e) {
+            LOG.warn("Could not store batch of {} scenarios: {}", batch.size(), e.getMessage());
+            batchIndexes.forEach(index -> results.set(index, LearnItemResult.failed(index, "Could not store scenario")));
+        }
+
+        batch.clear();
+        batchIndexes.clear();
+        if (!stored.isEmpty()) {
+            onStored.accept(stored);
+        }
+    }
+
+    /**
+     * Returns a trimmed scenario for the request, or {@code null} if the prompt or answer is missing.
+     */
+    private static ScenarioDto toValidScenarioDto(final PromptLearnRequest promptLearnRequest) {
+        if (promptLearnRequest == null) return null;
+
         String prompt = promptLearnRequest.getPrompt();
         String answer = promptLearnRequest.getAnswer();
         if (prompt == null || answer == null) {
             LOG.warn("Prompt or answer is null. Prompt: {}, Answer: {}", prompt, answer);
-            return false;
+            return null;
         }
 
         prompt = prompt.trim();
         answer = answer.trim();
         if (prompt.isEmpty() || answer.isEmpty()) {
             LOG.warn("Prompt or answer is empty after trimming. Prompt: '{}', Answer: '{}'", prompt, answer);
-            return false;
+            return null;
         }
 
         final ScenarioDto dto = new ScenarioDto();
         dto.setPrompt(prompt);
         dto.setAnswer(answer);
+        return dto;
+    }
 
-        int rows = scenarioDAO.createScenario(dto);
-        return rows > 0;
+    private static Scenario toScenario(final ScenarioDto dto) {
+        final Long scenarioId = dto.getScenarioId() != null ? Long.valueOf(dto.getScenarioId()) : null;
+        return new Scenario(scenarioId, dto.getVersion(), dto.getPrompt(), dto.getAnswer());
     }
 }
@@ -6,34 +6,67 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import java.util.HashSet;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import lombok.RequiredArgsConstructor;
+import no.mattikj.mkd.duckai.cache.WebResponseCache;
+import no.mattikj.mkd.duckai.domain.Upstream;
 import no.mattikj.mkd.duckai.domain.WebSearchType;
+import no.mattikj.mkd.duckai.index.Tokenizer;
+import no.mattikj.mkd.duckai.metrics.DuckAiMetrics;
+import no.mattikj.mkd.duckai.metrics.DuckAiMetrics.Rejection;
+import no.mattikj.mkd.duckai.metrics.DuckAiMetrics.UpstreamOutcome;
+import no.mattikj.mkd.duckai.resilience.Bulkhead;
+import no.mattikj.mkd.duckai.resilience.BulkheadRegistry;
+import no.mattikj.mkd.duckai.resilience.CallNotPermittedException;
+import no.mattikj.mkd.duckai.resilience.CircuitBreaker;
+import no.mattikj.mkd.duckai.resilience.CircuitBreakerRegistry;
+import no.mattikj.mkd.duckai.resilience.RateLimitExceededException;
+import no.mattikj.mkd.duckai.resilience.RateLimiterRegistry;
+import no.mattikj.mkd.duckai.resilience.UpstreamClientErrorException;
+import no.mattikj.mkd.duckai.resilience.UpstreamStatus;
 
 /**
  * WebSearchEngine class that fetches summaries from Wikipedia
- * with rate limiting and proper attribution.
+ * with rate limiting, response caching and proper attribution.
+ * <p>
+ * Every external API has its own circuit breaker and bulkhead. A call to an API whose circuit
+ * is open, or which already has its maximum of calls in flight, is refused at once and the
+ * prompt gets the local fallback answer instead of waiting out the read timeout.
  *
  * @author Matti Kjellstadli
  * @version 1.2.0
  */
 @Component
+@RequiredArgsConstructor
 public class WebSearchEngine {
 
+    private final WebResponseCache responseCache;
+    private final RateLimiterRegistry rateLimiters;
+    private final CircuitBreakerRegistry circuitBreakers;
+    private final BulkheadRegistry bulkheads;
+    private final HttpClient httpClient;
+    private final DuckAiMetrics metrics;
+    private final Map<Upstream, UpstreamStatus> statuses = new ConcurrentHashMap<>();
+
     @Value("${duckai.user-agent}")
     private String userAgent;
 
@@ -49,231 +82,317 @@ public class WebSearchEngine {
     @Value("${duckai.openlibrary.cover-url}")
     private String openLibraryCoverUrl;
 
-    @Value("${duckai.rate-limit.ms}")
-    private long minIntervalMs;
-
-    @Value("${duckai.http.connect-timeout}")
-    private int connectTimeout;
-
     @Value("${duckai.http.read-timeout}")
     private int readTimeout;
 
-    private static final Set<String> STOPWORDS = new HashSet<>(Arrays.asList(
+    private static final Tokenizer TOKENIZER = Tokenizer.titleWords(Set.of(
         "what", "who", "where", "when", "is", "are", "the", "a", "an", "of", "in", "on"
     ));
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
-    private final AtomicLong lastRequestTime = new AtomicLong(0);
-
     /**
      * Returns a Markdown-ready response based on the search type.
      */
     public String searchInternetForResponse(final String prompt, final WebSearchType type) {
-        if (type == null) return null;
+        return searchInternetForResponseAsync(prompt, type).join();
+    }
+
+    /**
+     * Returns a future with a Markdown-ready response based on the search type. The future
+     * completes with {@code null} if nothing was found, or if the call failed, timed out or was
+     * refused. Only the first is cached as an empty result.
+     */
+    public CompletableFuture<String> searchInternetForResponseAsync(final String prompt, final WebSearchType type) {
+        if (type == null) return CompletableFuture.completedFuture(null);
 
+        final CompletableFuture<String> response;
         switch (type) {
             case WIKI -> {
-                if (prompt == null || prompt.isBlank()) return null;
-                String sanitizedPrompt = sanitizePromptForWiki(prompt);
-                if (sanitizedPrompt.isBlank()) return null;
-                return fetchWikipediaSummaryWithRateLimit(sanitizedPrompt);
+                if (prompt == null || prompt.isBlank()) return CompletableFuture.completedFuture(null);
+                final String sanitizedPrompt = sanitizePromptForWiki(prompt);
+                if (sanitizedPrompt.isBlank()) return CompletableFuture.completedFuture(null);
+                response = responseCache.get(type, sanitizedPrompt,
+                    () -> guarded(Upstream.WIKIPEDIA, () -> fetchWikipediaSummary(sanitizedPrompt)));
             }
             case JOKE -> {
-                return fetchJokeFromAPI();
+                response = responseCache.get(type, "",
+                    () -> guarded(Upstream.JOKE_API, this::fetchJokeFromAPI));
             }
             case BOOK -> {
-                if (prompt == null || prompt.isBlank()) return null;
+                if (prompt == null || prompt.isBlank()) return CompletableFuture.completedFuture(null);
                 final String sanitizedPrompt = sanitizePromptForWiki(prompt);
-                if (sanitizedPrompt.isBlank()) return null;
-                return fetchBookFromAPI(sanitizedPrompt);
+                if (sanitizedPrompt.isBlank()) return CompletableFuture.completedFuture(null);
+                response = responseCache.get(type, sanitizedPrompt,
+                    () -> guarded(Upstream.OPEN_LIBRARY, () -> fetchBookFromAPI(sanitizedPrompt)));
             }
             default -> {
-                return null;
+                return CompletableFuture.completedFuture(null);
             }
         }
+
+        // A failed or refused call falls through to the local fallback answer, and is not cached
+        return response.exceptionally(e -> null);
     }
 
     /**
-     * Sanitizes a prompt for Wikipedia-friendly topics (joins words with underscores).
+     * Returns the status of every external API, as seen by the calls made to it so far.
      */
-    private String sanitizePromptForWiki(final String prompt) {
-        final String sanitized = prompt
-            .toLowerCase()
-            .replaceAll("[^a-zA-Z0-9()\\s]", "");
-        return Arrays.stream(sanitized.split("\\s+"))
-            .filter(w -> !STOPWORDS.contains(w))
-            .map(w -> w.isEmpty() ? "" :
-                Character.toUpperCase(w.charAt(0)) + w.substring(1))
-            .collect(Collectors.joining("_"));
+    public Map<Upstream, UpstreamStatus> upstreamStatuses() {
+        final Map<Upstream, UpstreamStatus> snapshot = new EnumMap<>(Upstream.class);
+        for (final Upstream upstream : Upstream.values()) {
+            snapshot.put(upstream, statuses.getOrDefault(upstream, UpstreamStatus.UNKNOWN));
+        }
+        return snapshot;
+    }
+
+    public CircuitBreaker.State circuitState(final Upstream upstream) {
+        return circuitBreakers.get(upstream).state();
     }
 
     /**
-     * Fetches Wikipedia summary with rate limiting.
+     * Sanitizes a prompt for Wikipedia-friendly topics (joins capitalized words with underscores).
      */
-    private String fetchWikipediaSummaryWithRateLimit(final String query) {
-        final long now = System.currentTimeMillis();
-        final long last = lastRequestTime.get();
-        final long wait = minIntervalMs - (now - last);
-        if (wait > 0) {
-            try {
-                Thread.sleep(wait);
-            } catch (final InterruptedException ignored) {
-                // We can just ignore this
+    String sanitizePromptForWiki(final String prompt) {
+        final StringBuilder sanitized = new StringBuilder(prompt.length());
+        TOKENIZER.forEachToken(prompt, (token, length, hash) -> {
+            if (!sanitized.isEmpty()) {
+                sanitized.append('_');
             }
+            final int first = Character.codePointAt(token, 0, length);
+            sanitized.appendCodePoint(Character.toUpperCase(first));
+            sanitized.append(token, Character.charCount(first), length - Character.charCount(first));
+        });
+        return sanitized.toString();
+    }
+
+    /**
+     * Runs the fetch if the circuit of the external API is not open and its bulkhead has room,
+     * once its rate limiter hands out a permit. The calling thread is never put to sleep while
+     * waiting for the permit. The bulkhead slot is held until the fetch completes.
+     */
+    private CompletableFuture<String> guarded(
+        final Upstream upstream,
+        final Supplier<CompletableFuture<String>> fetch
+    ) {
+        final CircuitBreaker breaker = circuitBreakers.get(upstream);
+        if (!breaker.tryAcquirePermission()) {
+            metrics.countRejectedCall(upstream, Rejection.CIRCUIT_OPEN);
+            return CompletableFuture.failedFuture(new CallNotPermittedException("Circuit for " + upstream.key() + " is open"));
+        }
+
+        final Bulkhead bulkhead = bulkheads.get(upstream);
+        if (!bulkhead.tryAcquire()) {
+            breaker.releasePermission();
+            metrics.countRejectedCall(upstream, Rejection.BULKHEAD_FULL);
+            return CompletableFuture.failedFuture(new CallNotPermittedException("Bulkhead for " + upstream.key() + " is full"));
         }
 
-        lastRequestTime.set(System.currentTimeMillis());
-        return fetchWikipediaSummary(query);
+        try {
+            return rateLimiters.get(upstream).acquire()
+                .thenCompose(ignored -> fetch.get())
+                .whenComplete((response, e) -> {
+                    bulkhead.release();
+                    breaker.releasePermission();
+                    if (unwrap(e) instanceof RateLimitExceededException) {
+                        metrics.countRejectedCall(upstream, Rejection.RATE_LIMITED);
+                    }
+                });
+        } catch (final RuntimeException e) {
+            bulkhead.release();
+            breaker.releasePermission();
+            throw e;
+        }
     }
 
     /**
-     * Performs an HTTP GET request to the given URL and parses the response body as JSON.
+     * Performs an asynchronous HTTP GET request to the given URL on the shared HTTP client and
+     * parses the response body as JSON, straight from the response byte stream. The latency of
+     * the call is recorded per upstream, together with whether it succeeded, failed or timed out,
+     * or was answered with a client error such as a 404 for an unknown topic. Only failures and
+     * timeouts count against the circuit breaker; a 429 is a failure, since the API is overloaded.
      *
-     * @param urlString the URL to request
-     * @return the response parsed as a {@link JsonNode}
-     * @throws IOException if the request fails or the response cannot be parsed
+     * @param upstream the external API being called
+     * @param url      the URL to request
+     * @return a future with the response parsed as a {@link JsonNode}, failing with an
+     * {@link UpstreamClientErrorException} on a client error, or otherwise if the request fails
+     * or the response cannot be parsed
      */
-    private JsonNode getJsonFromUrl(final String urlString) throws IOException {
+    private CompletableFuture<JsonNode> getJsonFromUrl(final Upstream upstream, final String url) {
+        final HttpRequest request;
         try {
-            final URL url = new URI(urlString).toURL();
-            final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            request = HttpRequest.newBuilder(new URI(url))
+                .header("User-Agent", userAgent)
+                .header("Accept", "application/json")
+                .timeout(Duration.ofMillis(readTimeout))
+                .GET()
+                .build();
+        } catch (final URISyntaxException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException("Invalid URL: " + url, e));
+        }
 
-            conn.setRequestProperty("User-Agent", userAgent);
-            conn.setConnectTimeout(connectTimeout);
-            conn.setReadTimeout(readTimeout);
+        final long startedAt = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+            .thenApply(response -> {
+                try (InputStream body = response.body()) {
+                    final int status = response.statusCode();
+                    if (status >= 400 && status < 500 && status != 429) {
+                        throw new UpstreamClientErrorException(status, url);
+                    }
+                    if (status < 200 || status >= 300) {
+                        throw new IOException("HTTP " + status + " while calling " + url);
+                    }
+                    return MAPPER.readTree(body);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })
+            .whenComplete((root, e) -> recordCall(upstream, outcome(e), startedAt));
+    }
 
-            final int status = conn.getResponseCode();
+    private void recordCall(final Upstream upstream, final UpstreamOutcome outcome, final long startedAt) {
+        final long durationNanos = System.nanoTime() - startedAt;
+        metrics.recordUpstreamCall(upstream, outcome, durationNanos);
+        circuitBreakers.get(upstream).onResult(durationNanos, outcome.isFailure());
+        final long calledAtMillis = System.currentTimeMillis();
+        statuses.compute(upstream, (key, status) ->
+            (status != null ? status : UpstreamStatus.UNKNOWN).next(outcome, calledAtMillis));
+    }
 
-            final InputStream stream = status >= 200 && status < 300
-                ? conn.getInputStream()
-                : conn.getErrorStream();
+    private static UpstreamOutcome outcome(final Throwable failure) {
+        if (failure == null) return UpstreamOutcome.SUCCESS;
 
-            try (BufferedReader reader =
-                     new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+        final Throwable cause = cause(failure);
+        if (cause instanceof UpstreamClientErrorException) return UpstreamOutcome.CLIENT_ERROR;
+        return cause instanceof HttpTimeoutException ? UpstreamOutcome.TIMEOUT : UpstreamOutcome.ERROR;
+    }
 
-                if (status < 200 || status >= 300) {
-                    throw new IOException("HTTP " + status + " while calling " + urlString);
-                }
+    /**
+     * A client error, such as a 404 for an unknown topic, means there is nothing to find, which
+     * may be cached as an empty result. Any other failure is passed on, so a timeout or an
+     * outage is never cached, nor written to the persistent cache tier, as "no answer".
+     */
+    private static String nothingFoundOnClientError(final Throwable failure) {
+        if (cause(failure) instanceof UpstreamClientErrorException) return null;
 
-                return MAPPER.readTree(reader);
-            } finally {
-                conn.disconnect();
-            }
+        throw failure instanceof CompletionException completion ? completion : new CompletionException(failure);
+    }
 
-        } catch (final URISyntaxException e) {
-            throw new IOException("Invalid URL: " + urlString, e);
-        }
+    private static Throwable unwrap(final Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null
+            ? failure.getCause()
+            : failure;
     }
 
+    /**
+     * Returns the failure behind the completion and unchecked I/O wrappers.
+     */
+    private static Throwable cause(final Throwable failure) {
+        final Throwable unwrapped = unwrap(failure);
+        return unwrapped instanceof UncheckedIOException unchecked ? unchecked.getCause() : unwrapped;
+    }
 
     /**
      * Fetches a summary from Wikipedia + appends the source link and attribution.
      */
-    private String fetchWikipediaSummary(final String query) {
-        try {
-            final String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
-            final String url = wikipediaBaseUrl + encodedQuery;
-
-            final JsonNode root = getJsonFromUrl(url);
-
-            final String extract = root.path("extract").asText("");
-            if (extract.isBlank()) return null;
+    private CompletableFuture<String> fetchWikipediaSummary(final String query) {
+        final String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
+        return getJsonFromUrl(Upstream.WIKIPEDIA, wikipediaBaseUrl + encodedQuery)
+            .thenApply(root -> toWikipediaSummary(query, root))
+            .exceptionally(WebSearchEngine::nothingFoundOnClientError);
+    }
 
-            final String imageUrl = root.path("originalimage").path("source").asText("");
-            final String pageUrl = root.path("content_urls").path("desktop").path("page").asText("");
+    private String toWikipediaSummary(final String query, final JsonNode root) {
+        final String extract = root.path("extract").asText("");
+        if (extract.isBlank()) return null;
 
-            final StringBuilder result = new StringBuilder(extract);
+        final String imageUrl = root.path("originalimage").path("source").asText("");
+        final String pageUrl = root.path("content_urls").path("desktop").path("page").asText("");
 
-            if (!imageUrl.isBlank()) {
-                result.append("<br>![").append(query).append("](").append(imageUrl).append(")");
-            }
+        final StringBuilder result = new StringBuilder(extract);
 
-            if (!pageUrl.isBlank()) {
-                result.append("<br>Source: [Wikipedia Article](").append(pageUrl).append(")");
-            }
+        if (!imageUrl.isBlank()) {
+            result.append("<br>![").append(query).append("](").append(imageUrl).append(")");
+        }
 
-            result.append("<br>*(Information from Wikipedia, CC BY-SA 3.0)*");
+        if (!pageUrl.isBlank()) {
+            result.append("<br>Source: [Wikipedia Article](").append(pageUrl).append(")");
+        }
 
-            return result.toString();
+        result.append("<br>*(Information from Wikipedia, CC BY-SA 3.0)*");
 
-        } catch (final Exception ignored) {
-            return null;
-        }
+        return result.toString();
     }
 
-    private String fetchJokeFromAPI() {
-        try {
-            final JsonNode root = getJsonFromUrl(jokeBaseUrl);
-
-            if (root.path("type").asText().equals("single")) {
-                return root.path("joke").asText(null);
-            }
+    private CompletableFuture<String> fetchJokeFromAPI() {
+        return getJsonFromUrl(Upstream.JOKE_API, jokeBaseUrl)
+            .thenApply(this::toJoke)
+            .exceptionally(WebSearchEngine::nothingFoundOnClientError);
+    }
 
-            if (root.path("type").asText().equals("twopart")) {
-                return root.path("setup").asText("") +
-                       "<br>" +
-                       root.path("delivery").asText("");
-            }
+    private String toJoke(final JsonNode root) {
+        if (root.path("type").asText().equals("single")) {
+            return root.path("joke").asText(null);
+        }
 
-        } catch (final Exception ignored) {
-            // Ignoring on purpose
+        if (root.path("type").asText().equals("twopart")) {
+            return root.path("setup").asText("") +
+                   "<br>" +
+                   root.path("delivery").asText("");
         }
 
         return null;
     }
 
-    private String fetchBookFromAPI(final String query) {
-        try {
-            final String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
-            final String url = openLibrarySearchUrl + encodedQuery + "&limit=1";
-
-            final JsonNode root = getJsonFromUrl(url);
-            final JsonNode docs = root.path("docs");
+    private CompletableFuture<String> fetchBookFromAPI(final String query) {
+        final String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
+        return getJsonFromUrl(Upstream.OPEN_LIBRARY, openLibrarySearchUrl + encodedQuery + "&limit=1")
+            .thenApply(this::toBook)
+            .exceptionally(WebSearchEngine::nothingFoundOnClientError);
+    }
 
-            if (!docs.isArray() || docs.isEmpty()) return null;
+    private String toBook(final JsonNode root) {
+        final JsonNode docs = root.path("docs");
 
-            final JsonNode book = docs.get(0);
+        if (!docs.isArray() || docs.isEmpty()) return null;
 
-            final String title = book.path("title").asText("");
-            final String author = book.path("author_name").isArray()
-                ? book.path("author_name").get(0).asText("")
-                : "";
-            final String year = book.path("first_publish_year").asText("");
-            final String workKey = book.path("key").asText("");
-            final String coverId = book.path("cover_i").asText("");
+        final JsonNode book = docs.get(0);
 
-            if (title.isBlank()) return null;
+        final String title = book.path("title").asText("");
+        final String author = book.path("author_name").isArray()
+            ? book.path("author_name").get(0).asText("")
+            : "";
+        final String year = book.path("first_publish_year").asText("");
+        final String workKey = book.path("key").asText("");
+        final String coverId = book.path("cover_i").asText("");
 
-            final StringBuilder result = new StringBuilder();
+        if (title.isBlank()) return null;
 
-            result.append("### ").append(title);
+        final StringBuilder result = new StringBuilder();
 
-            if (!author.isBlank()) {
-                result.append("<br>**Author:** ").append(author);
-            }
+        result.append("### ").append(title);
 
-            if (!year.isBlank()) {
-                result.append("<br>**First Published:** ").append(year);
-            }
+        if (!author.isBlank()) {
+            result.append("<br>**Author:** ").append(author);
+        }
 
-            if (!coverId.isBlank()) {
-                final String coverUrl = openLibraryCoverUrl + coverId + "-L.jpg";
-                result.append("<br>![").append(title).append(" Cover](")
-                    .append(coverUrl).append(")");
-            }
+        if (!year.isBlank()) {
+            result.append("<br>**First Published:** ").append(year);
+        }
 
-            if (!workKey.isBlank()) {
-                result.append("<br>Source: [Open Library](https://openlibrary.org")
-                    .append(workKey).append(")");
-            }
+        if (!coverId.isBlank()) {
+            final String coverUrl = openLibraryCoverUrl + coverId + "-L.jpg";
+            result.append("<br>![").append(title).append(" Cover](")
+                .append(coverUrl).append(")");
+        }
 
-            result.append("<br>*(Information from Open Library — Free & Open API)*");
+        if (!workKey.isBlank()) {
+            result.append("<br>Source: [Open Library](https://openlibrary.org")
+                .append(workKey).append(")");
+        }
 
-            return result.toString();
+        result.append("<br>*(Information from Open Library — Free & Open API)*");
 
-        } catch (final Exception ignored) {
-            return null;
-        }
+        return result.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,9 @@
+create table if not exists duck.web_cache (
+    search_type  VARCHAR(16) NOT NULL,
+    query        TEXT NOT NULL,
+    response     TEXT,
+    expires_at   TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (search_type, query)
+);
+
+create index if not exists web_cache_expires_at_idx on duck.web_cache (expires_at);
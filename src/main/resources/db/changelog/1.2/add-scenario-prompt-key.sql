@@ -0,0 +1,10 @@
+alter table duck.scenario
+    add column if not exists prompt_key TEXT
+    generated always as (md5(lower(btrim(regexp_replace(prompt, '\s+', ' ', 'g'))))) stored;
+
+delete from duck.scenario s
+using duck.scenario newer
+where s.prompt_key = newer.prompt_key
+  and s.scenario_db_id < newer.scenario_db_id;
+
+create unique index if not exists scenario_prompt_key_idx on duck.scenario (prompt_key);
@@ -0,0 +1,17 @@
+create sequence if not exists duck.scenario_version_seq;
+
+alter table duck.scenario
+    add column if not exists version BIGINT;
+
+-- Existing rows keep their id as version, so snapshots written before this change stay valid
+update duck.scenario
+set version = scenario_db_id
+where version is null;
+
+select setval('duck.scenario_version_seq', coalesce((select max(version) from duck.scenario), 0) + 1, false);
+
+alter table duck.scenario
+    alter column version set default nextval('duck.scenario_version_seq'),
+    alter column version set not null;
+
+create index if not exists scenario_version_idx on duck.scenario (version);
@@ -0,0 +1,15 @@
+-- Rows changed directly in the database get a new version too, so the next reload picks them up
+create or replace function duck.bump_scenario_version() returns trigger as $$
+begin
+    if new.version = old.version then
+        new.version := nextval('duck.scenario_version_seq');
+    end if;
+    return new;
+end;
+$$ language plpgsql;
+
+drop trigger if exists scenario_version_trg on duck.scenario;
+
+create trigger scenario_version_trg
+    before update on duck.scenario
+    for each row execute function duck.bump_scenario_version();
@@ -0,0 +1,80 @@
+package no.mattikj.mkd.duckai.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ExpiringLruCacheTest {
+
+    private AtomicLong now;
+    private ExpiringLruCache<String, String> cache;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong();
+        cache = new ExpiringLruCache<>(2, now::get);
+    }
+
+    @Test
+    void testGetReturnsCachedValue() {
+        cache.put("duck", "Quack", 1_000);
+
+        assertEquals("Quack", cache.get("duck").value());
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test
+    void testNullValuesAreCached() {
+        cache.put("nothing", null, 1_000);
+
+        final ExpiringLruCache.Entry<String> entry = cache.get("nothing");
+        assertNotNull(entry);
+        assertNull(entry.value());
+    }
+
+    @Test
+    void testEntriesExpire() {
+        cache.put("duck", "Quack", 1_000);
+        now.addAndGet(1_000_000_000L);
+
+        assertNull(cache.get("duck"));
+        assertEquals(1, cache.missCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testZeroTtlIsNotCached() {
+        cache.put("duck", "Quack", 0);
+
+        assertNull(cache.get("duck"));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted() {
+        cache.put("a", "A", 1_000);
+        cache.put("b", "B", 1_000);
+        cache.get("a");
+        cache.put("c", "C", 1_000);
+
+        assertNull(cache.get("b"));
+        assertEquals("A", cache.get("a").value());
+        assertEquals("C", cache.get("c").value());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    void testExpiredEntriesAreDroppedBeforeEvicting() {
+        cache.put("a", "A", 10);
+        cache.put("b", "B", 1_000);
+        now.addAndGet(20_000_000L);
+        cache.put("c", "C", 1_000);
+
+        assertEquals("B", cache.get("b").value());
+        assertEquals(0, cache.evictionCount());
+    }
+}
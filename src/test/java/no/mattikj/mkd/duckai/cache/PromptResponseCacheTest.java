@@ -0,0 +1,52 @@
+package no.mattikj.mkd.duckai.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.mattikj.mkd.duckai.domain.ResponseSourceType;
+import no.mattikj.mkd.duckai.dto.PromptResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PromptResponseCacheTest {
+
+    private PromptResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new PromptResponseCache(10, 60_000, 0);
+    }
+
+    @Test
+    void testNormalizedPromptsShareEntry() {
+        PromptResponse response = new PromptResponse("Quack!", ResponseSourceType.LOCAL);
+        cache.put(cache.generation(), "What is a duck", response);
+
+        PromptResponse cached = cache.get(cache.generation(), "  what IS a   duck ");
+        assertEquals("Quack!", cached.getReply());
+        assertEquals(ResponseSourceType.LOCAL, cached.getSource());
+        assertNotSame(response, cached);
+        assertEquals(1L, cache.stats().get("hits"));
+    }
+
+    @Test
+    void testInvalidateAllStartsNewGeneration() {
+        long generation = cache.generation();
+        cache.invalidateAll();
+
+        // A response computed before the invalidation is stored under its own, stale generation
+        cache.put(generation, "Help", new PromptResponse("Quack!", ResponseSourceType.LOCAL));
+
+        assertNull(cache.get(cache.generation(), "Help"));
+        assertEquals(1L, cache.stats().get("invalidations"));
+    }
+
+    @Test
+    void testInternetResponsesUseTheirOwnTimeToLive() {
+        cache.put(cache.generation(), "Alan Turing", new PromptResponse("A mathematician.", ResponseSourceType.INTERNET));
+
+        assertNull(cache.get(cache.generation(), "Alan Turing"));
+    }
+}
@@ -0,0 +1,81 @@
+package no.mattikj.mkd.duckai.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    void testConcurrentCallsShareOneCall() {
+        final CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        final CompletableFuture<String> first = singleFlight.execute("Java", () -> call(upstream));
+        final CompletableFuture<String> second = singleFlight.execute("Java", () -> call(upstream));
+        upstream.complete("Java is an island.");
+
+        assertEquals("Java is an island.", first.join());
+        assertEquals("Java is an island.", second.join());
+        assertEquals(1, calls.get());
+        assertEquals(1, singleFlight.coalescedCount());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void testCompletedCallsAreNotShared() {
+        singleFlight.execute("Java", () -> call(CompletableFuture.completedFuture("Java is an island.")));
+        singleFlight.execute("Java", () -> call(CompletableFuture.completedFuture("Java is an island.")));
+
+        assertEquals(2, calls.get());
+        assertEquals(0, singleFlight.coalescedCount());
+    }
+
+    @Test
+    void testDifferentKeysAreNotShared() {
+        final CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        singleFlight.execute("Java", () -> call(upstream));
+        singleFlight.execute("Kotlin", () -> call(upstream));
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testFailuresReachEveryCallerAndAreNotKept() {
+        final CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        final CompletableFuture<String> first = singleFlight.execute("Java", () -> call(upstream));
+        final CompletableFuture<String> second = singleFlight.execute("Java", () -> call(upstream));
+        upstream.completeExceptionally(new IllegalStateException("Upstream down"));
+
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void testCancellingOneCallerDoesNotAffectOthers() {
+        final CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        final CompletableFuture<String> first = singleFlight.execute("Java", () -> call(upstream));
+        final CompletableFuture<String> second = singleFlight.execute("Java", () -> call(upstream));
+        first.cancel(false);
+        upstream.complete("Java is an island.");
+
+        assertFalse(second.isCompletedExceptionally());
+        assertEquals("Java is an island.", second.join());
+    }
+
+    private CompletableFuture<String> call(final CompletableFuture<String> result) {
+        calls.incrementAndGet();
+        return result;
+    }
+}
@@ -0,0 +1,136 @@
+package no.mattikj.mkd.duckai.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import no.mattikj.mkd.duckai.dao.WebCacheDAO;
+import no.mattikj.mkd.duckai.domain.WebSearchType;
+import no.mattikj.mkd.duckai.dto.WebCacheEntryDto;
+import no.mattikj.mkd.duckai.resilience.RateLimitExceededException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebResponseCacheTest {
+
+    private WebCacheDAO webCacheDAO;
+    private AtomicInteger fetches;
+
+    @BeforeEach
+    void setUp() {
+        webCacheDAO = mock(WebCacheDAO.class);
+        fetches = new AtomicInteger();
+    }
+
+    @Test
+    void testResponsesAreFetchedOnce() {
+        final WebResponseCache cache = newCache(false);
+
+        assertEquals("Java is an island.", cache.get(WebSearchType.WIKI, "Java", this::fetch).join());
+        assertEquals("Java is an island.", cache.get(WebSearchType.WIKI, "Java", this::fetch).join());
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void testNegativeResultsAreCached() {
+        final WebResponseCache cache = newCache(false);
+
+        assertNull(cache.get(WebSearchType.WIKI, "Asdf", this::fetchNothing).join());
+        assertNull(cache.get(WebSearchType.WIKI, "Asdf", this::fetchNothing).join());
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void testTypesWithoutTtlAreNotCached() {
+        final WebResponseCache cache = newCache(false);
+
+        cache.get(WebSearchType.JOKE, "", this::fetch);
+        cache.get(WebSearchType.JOKE, "", this::fetch);
+        assertEquals(2, fetches.get());
+        verify(webCacheDAO, never()).getEntry(any(), any());
+    }
+
+    @Test
+    void testPersistentTierIsUsedBeforeFetching() {
+        final WebResponseCache cache = newCache(true);
+        when(webCacheDAO.getEntry("WIKI", "Java")).thenReturn(
+            new WebCacheEntryDto("WIKI", "Java", "Stored answer", OffsetDateTime.now().plusHours(1)));
+
+        assertEquals("Stored answer", cache.get(WebSearchType.WIKI, "Java", this::fetch).join());
+        assertEquals(0, fetches.get());
+    }
+
+    @Test
+    void testFetchedResponsesAreWrittenToPersistentTier() {
+        final WebResponseCache cache = newCache(true);
+
+        cache.get(WebSearchType.WIKI, "Java", this::fetch);
+        verify(webCacheDAO).saveEntry(any());
+    }
+
+    @Test
+    void testConcurrentMissesShareOneFetch() {
+        final WebResponseCache cache = newCache(false);
+        final CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        final CompletableFuture<String> first = cache.get(WebSearchType.WIKI, "Java", () -> fetchLater(upstream));
+        final CompletableFuture<String> second = cache.get(WebSearchType.WIKI, "Java", () -> fetchLater(upstream));
+        upstream.complete("Java is an island.");
+
+        assertEquals("Java is an island.", first.join());
+        assertEquals("Java is an island.", second.join());
+        assertEquals(1, fetches.get());
+        assertEquals(1, cache.coalescedCount());
+    }
+
+    private WebResponseCache newCache(final boolean persistent) {
+        return new WebResponseCache(webCacheDAO, 100, 60_000, 60_000, 0, 1_000, persistent);
+    }
+
+    @Test
+    void testFailedFetchesAreNotCached() {
+        final WebResponseCache cache = newCache(false);
+
+        cache.get(WebSearchType.WIKI, "Java", this::fetchFailing);
+        assertEquals("Java is an island.", cache.get(WebSearchType.WIKI, "Java", this::fetch).join());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void testFailedFetchesAreNotPersisted() {
+        final WebResponseCache cache = newCache(true);
+
+        assertTrue(cache.get(WebSearchType.WIKI, "Java", this::fetchFailing).isCompletedExceptionally());
+        verify(webCacheDAO, never()).saveEntry(any());
+    }
+
+    private CompletableFuture<String> fetch() {
+        fetches.incrementAndGet();
+        return CompletableFuture.completedFuture("Java is an island.");
+    }
+
+    private CompletableFuture<String> fetchLater(final CompletableFuture<String> upstream) {
+        fetches.incrementAndGet();
+        return upstream;
+    }
+
+    private CompletableFuture<String> fetchNothing() {
+        fetches.incrementAndGet();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private CompletableFuture<String> fetchFailing() {
+        fetches.incrementAndGet();
+        return CompletableFuture.failedFuture(new RateLimitExceededException("Rate limit for wikipedia exceeded"));
+    }
+}
@@ -0,0 +1,41 @@
+package no.mattikj.mkd.duckai.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.web.embedded.EmbeddedWebServerFactoryCustomizerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.embedded.TomcatVirtualThreadsWebServerFactoryCustomizer;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExecutionConfigTest {
+
+    private final WebApplicationContextRunner contextRunner = new WebApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(EmbeddedWebServerFactoryCustomizerAutoConfiguration.class))
+        .withUserConfiguration(ExecutionConfig.class);
+
+    @Test
+    void testVirtualThreadsHandleRequestsAndOutboundCalls() {
+        // Spring Boot and the outbound executor parse the flag alike, whatever its case
+        contextRunner.withPropertyValues("spring.threads.virtual.enabled=True").run(context -> {
+            assertEquals(1, context.getBeansOfType(TomcatVirtualThreadsWebServerFactoryCustomizer.class).size());
+            assertTrue(runsOnVirtualThread(context.getBean("outboundExecutor", ExecutorService.class)));
+        });
+    }
+
+    @Test
+    void testPlatformThreadsByDefault() {
+        contextRunner.run(context -> {
+            assertTrue(context.getBeansOfType(TomcatVirtualThreadsWebServerFactoryCustomizer.class).isEmpty());
+            assertFalse(runsOnVirtualThread(context.getBean("outboundExecutor", ExecutorService.class)));
+        });
+    }
+
+    private static boolean runsOnVirtualThread(final ExecutorService executor) throws Exception {
+        return executor.submit(() -> Thread.currentThread().isVirtual()).get();
+    }
+}
@@ -0,0 +1,86 @@
+package no.mattikj.mkd.duckai.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import no.mattikj.mkd.duckai.controller.DuckAIController;
+import no.mattikj.mkd.duckai.dto.ImportProgress;
+import no.mattikj.mkd.duckai.service.ScenarioImportService;
+import no.mattikj.mkd.duckai.service.ScenarioResponderEngine;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(
+    controllers = DuckAIController.class,
+    properties = {"frontend.url=http://localhost:3000", "duckai.admin.password={noop}secret"}
+)
+@Import(SecurityConfiguration.class)
+class SecurityConfigurationTest {
+
+    private static final String ADMIN = "Basic "
+        + Base64.getEncoder().encodeToString("admin:secret".getBytes(StandardCharsets.UTF_8));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ScenarioResponderEngine scenarioResponderEngine;
+
+    @MockitoBean
+    private ScenarioImportService scenarioImportService;
+
+    @Test
+    void testBulkLearningRequiresCredentials() throws Exception {
+        mockMvc.perform(post("/api/duckai/learn/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"prompt\":\"hello\",\"answer\":\"Hi\"}]"))
+            .andExpect(status().isUnauthorized());
+
+        verify(scenarioResponderEngine, never()).learnScenariosInBulk(any());
+    }
+
+    @Test
+    void testStreamLearningRequiresCredentials() throws Exception {
+        mockMvc.perform(post("/api/duckai/learn/stream")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content("{\"prompt\":\"hello\",\"answer\":\"Hi\"}\n"))
+            .andExpect(status().isUnauthorized());
+
+        verify(scenarioImportService, never()).importScenarios(any(), any());
+    }
+
+    @Test
+    void testStreamLearningIsAllowedForAdmin() throws Exception {
+        when(scenarioImportService.importScenarios(any(), any())).thenReturn(new ImportProgress(1, 1, 0, true, null));
+
+        mockMvc.perform(post("/api/duckai/learn/stream")
+                .header(HttpHeaders.AUTHORIZATION, ADMIN)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content("{\"prompt\":\"hello\",\"answer\":\"Hi\"}\n"))
+            .andExpect(status().isOk());
+    }
+
+    @Test
+    void testPromptsAreAnsweredWithoutCredentials() throws Exception {
+        mockMvc.perform(post("/api/duckai")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"prompt\":\"hello\"}"))
+            .andExpect(status().isOk());
+    }
+}
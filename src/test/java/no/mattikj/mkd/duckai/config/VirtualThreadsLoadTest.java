@@ -0,0 +1,103 @@
+package no.mattikj.mkd.duckai.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import no.mattikj.mkd.duckai.dao.ScenarioDAO;
+import no.mattikj.mkd.duckai.dao.WebCacheDAO;
+import no.mattikj.mkd.duckai.health.DatabasePoolHealthIndicator;
+import no.mattikj.mkd.duckai.service.WebSearchEngine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        "spring.threads.virtual.enabled=true",
+        "server.tomcat.threads.max=" + VirtualThreadsLoadTest.PLATFORM_POOL_SIZE,
+        "server.tomcat.threads.min-spare=1",
+        "frontend.url=http://localhost:5173",
+        "spring.autoconfigure.exclude="
+            + "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration,"
+            + "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration,"
+            + "org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration"
+    }
+)
+class VirtualThreadsLoadTest {
+
+    static final int PLATFORM_POOL_SIZE = 4;
+    private static final int REQUESTS = 25 * PLATFORM_POOL_SIZE;
+
+    @LocalServerPort
+    private int port;
+
+    // The database is not started; the index is built from an empty table
+    @MockitoBean
+    private ScenarioDAO scenarioDAO;
+
+    @MockitoBean
+    private WebCacheDAO webCacheDAO;
+
+    @MockitoBean
+    private DatabasePoolHealthIndicator databasePoolHealthIndicator;
+
+    @MockitoBean
+    private WebSearchEngine webSearchEngine;
+
+    @Test
+    void testConcurrentRequestsExceedTomcatThreadPool() throws Exception {
+        CountDownLatch inFlight = new CountDownLatch(REQUESTS);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger platformThreads = new AtomicInteger();
+        when(webSearchEngine.searchInternetForResponse(any(), any())).thenAnswer(invocation -> {
+            if (!Thread.currentThread().isVirtual()) {
+                platformThreads.incrementAndGet();
+            }
+            inFlight.countDown();
+            release.await(30, TimeUnit.SECONDS);
+            return "Alan Turing was a mathematician.";
+        });
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/duckai"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"prompt\":\"Who was Alan Turing?\"}"))
+            .build();
+        try (HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            try {
+                for (int i = 0; i < REQUESTS; i++) {
+                    responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+                }
+
+                // Every request waits on the upstream at the same time, each on its own virtual thread
+                assertTrue(inFlight.await(30, TimeUnit.SECONDS),
+                    (REQUESTS - inFlight.getCount()) + " of " + REQUESTS + " requests were in flight");
+                assertEquals(0, platformThreads.get());
+            } finally {
+                release.countDown();
+            }
+
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                HttpResponse<String> completed = response.get(30, TimeUnit.SECONDS);
+                assertEquals(200, completed.statusCode());
+                assertTrue(completed.body().contains("Alan Turing was a mathematician."));
+            }
+        }
+    }
+}
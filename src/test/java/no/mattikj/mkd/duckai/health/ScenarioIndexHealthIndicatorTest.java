@@ -0,0 +1,51 @@
+package no.mattikj.mkd.duckai.health;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import no.mattikj.mkd.duckai.service.ScenarioResponderEngine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ScenarioIndexHealthIndicatorTest {
+
+    private ScenarioResponderEngine engine;
+    private ScenarioIndexHealthIndicator indicator;
+
+    @BeforeEach
+    void setUp() {
+        engine = mock(ScenarioResponderEngine.class);
+        indicator = new ScenarioIndexHealthIndicator(engine);
+        when(engine.lastReloadCompletedAtMillis()).thenReturn(-1L);
+    }
+
+    @Test
+    void testOutOfServiceUntilFirstBuildCompletes() {
+        Health health = indicator.health();
+
+        assertEquals(Status.OUT_OF_SERVICE, health.getStatus());
+        assertEquals(0, health.getDetails().get("scenarios"));
+        assertFalse(health.getDetails().containsKey("lastReloadAgeMs"));
+    }
+
+    @Test
+    void testUpWithReloadDetailsOnceReady() {
+        when(engine.isIndexReady()).thenReturn(true);
+        when(engine.scenarioCount()).thenReturn(2);
+        when(engine.lastReloadDurationMillis()).thenReturn(150L);
+        when(engine.lastReloadCompletedAtMillis()).thenReturn(System.currentTimeMillis() - 1_000);
+
+        Health health = indicator.health();
+
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(2, health.getDetails().get("scenarios"));
+        assertEquals(150L, health.getDetails().get("lastReloadDurationMs"));
+        assertTrue((Long) health.getDetails().get("lastReloadAgeMs") >= 1_000);
+    }
+}
@@ -0,0 +1,81 @@
+package no.mattikj.mkd.duckai.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import no.mattikj.mkd.duckai.domain.ScenarioItem;
+import no.mattikj.mkd.duckai.domain.SparseVector;
+import no.mattikj.mkd.duckai.domain.StoredText;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnswerStoreTest {
+
+    @Test
+    void testOnHeapStoreKeepsStrings() {
+        AnswerStore store = AnswerStore.onHeap();
+        String answer = "Only the smartest bird.";
+
+        assertFalse(store.isOffHeap());
+        assertEquals(StoredText.of(answer), store.store(answer));
+        assertEquals(0L, store.offHeapBytes());
+    }
+
+    @Test
+    void testOffHeapStoreRoundTripsAcrossChunks() {
+        AnswerStore store = AnswerStore.offHeap();
+        String answer = "**Ænder** er vannfugler 🦆 ".repeat(1_000);
+
+        List<StoredText> stored = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            stored.add(store.store(i + " " + answer));
+        }
+
+        for (int i = 0; i < stored.size(); i++) {
+            assertEquals(i + " " + answer, stored.get(i).text());
+        }
+        assertTrue(store.offHeapBytes() > AnswerStore.CHUNK_BYTES);
+        assertEquals(0L, store.offHeapBytes() % AnswerStore.CHUNK_BYTES);
+    }
+
+    @Test
+    void testAnswerLargerThanChunkGetsItsOwnBuffer() {
+        AnswerStore store = AnswerStore.offHeap();
+        String small = store.store("small").text();
+        String large = "x".repeat(AnswerStore.CHUNK_BYTES + 1);
+
+        assertEquals(large, store.store(large).text());
+        assertEquals("small", small);
+        assertEquals(2L * AnswerStore.CHUNK_BYTES + 1, store.offHeapBytes());
+    }
+
+    @Test
+    void testNullAnswerStaysOnHeap() {
+        AnswerStore store = AnswerStore.offHeap();
+
+        assertNull(store.store(null).text());
+        assertEquals(0L, store.offHeapBytes());
+    }
+
+    @Test
+    void testOffHeapIndexRetainsLessHeapAndDecodesMatches() {
+        ScenarioIndex onHeap = new ScenarioIndex();
+        ScenarioIndex offHeap = new ScenarioIndex(1, Integer.MAX_VALUE, null, AnswerStore.offHeap());
+        String answer = "A long Markdown answer. ".repeat(100);
+
+        for (ScenarioIndex index : List.of(onHeap, offHeap)) {
+            int duck = index.dictionary().intern("duck");
+            index.add(new ScenarioItem("duck", index.answers().store(answer), SparseVector.of(new int[] {duck}, 1)));
+        }
+
+        assertTrue(offHeap.estimatedMemoryBytes() + answer.length() <= onHeap.estimatedMemoryBytes() + 24);
+        assertEquals(AnswerStore.CHUNK_BYTES, offHeap.offHeapBytes());
+        int duck = offHeap.dictionary().lookup("duck");
+        assertEquals(answer, offHeap.findBestMatch(SparseVector.of(new int[] {duck}, 1), 0.45).response());
+    }
+}
@@ -0,0 +1,145 @@
+package no.mattikj.mkd.duckai.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import no.mattikj.mkd.duckai.domain.ScenarioItem;
+import no.mattikj.mkd.duckai.domain.SparseVector;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexSnapshotTest {
+
+    private static final double THRESHOLD = 0.45;
+
+    @TempDir
+    Path directory;
+
+    private ScenarioIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ScenarioIndex();
+        index.add(item("duck", "Only the smartest bird.", "duck", "bird"));
+        index.add(item("hello", "Hi there! ÆØÅ", "hello"));
+        index.add(item("no answer", null, "silence"));
+    }
+
+    @Test
+    void testReadRestoresTermsItemsAndVectors() throws IOException {
+        Path path = directory.resolve("index.snapshot");
+        IndexSnapshot.write(path, index, 42L);
+
+        ScenarioIndex restored = new ScenarioIndex();
+        assertEquals(42L, IndexSnapshot.read(path, restored));
+
+        assertEquals(index.dictionary().terms(), restored.dictionary().terms());
+        assertEquals(index.size(), restored.size());
+
+        List<ScenarioItem> expected = index.items();
+        List<ScenarioItem> actual = restored.items();
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).prompt(), actual.get(i).prompt());
+            assertEquals(expected.get(i).response(), actual.get(i).response());
+            assertArrayEquals(expected.get(i).vector().terms(), actual.get(i).vector().terms());
+            assertArrayEquals(expected.get(i).vector().weights(), actual.get(i).vector().weights());
+            assertEquals(expected.get(i).vector().norm(), actual.get(i).vector().norm());
+            assertEquals(expected.get(i).vector().tokenCount(), actual.get(i).vector().tokenCount());
+        }
+        assertNull(actual.get(2).response());
+
+        int hello = restored.dictionary().lookup("hello");
+        assertEquals("Hi there! ÆØÅ", restored.findBestMatch(SparseVector.of(new int[] {hello}, 1), THRESHOLD).response());
+    }
+
+    @Test
+    void testReadStoresAnswersInTheTargetStore() throws IOException {
+        Path path = directory.resolve("index.snapshot");
+        IndexSnapshot.write(path, index, 1L);
+
+        ScenarioIndex restored = new ScenarioIndex(1, Integer.MAX_VALUE, null, AnswerStore.offHeap());
+        IndexSnapshot.read(path, restored);
+
+        assertEquals(AnswerStore.CHUNK_BYTES, restored.offHeapBytes());
+        assertEquals(List.of("Only the smartest bird.", "Hi there! ÆØÅ"),
+            restored.items().stream().limit(2).map(ScenarioItem::response).toList());
+        assertNull(restored.items().get(2).response());
+    }
+
+    @Test
+    void testWriteReplacesSnapshotWithoutLeavingTemporaryFiles() throws IOException {
+        Path path = directory.resolve("index.snapshot");
+        IndexSnapshot.write(path, index, 1L);
+        index.add(item("new", "New answer", "new"));
+        IndexSnapshot.write(path, index, 2L);
+
+        ScenarioIndex restored = new ScenarioIndex();
+        assertEquals(2L, IndexSnapshot.read(path, restored));
+        assertEquals(4, restored.size());
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(path), files.toList());
+        }
+    }
+
+    @Test
+    void testCorruptSnapshotIsRejected() throws IOException {
+        Path path = directory.resolve("index.snapshot");
+        IndexSnapshot.write(path, index, 1L);
+
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 0x5A;
+        Files.write(path, bytes);
+
+        assertThrows(IOException.class, () -> IndexSnapshot.read(path, new ScenarioIndex()));
+    }
+
+    @Test
+    void testTruncatedSnapshotIsRejected() throws IOException {
+        Path path = directory.resolve("index.snapshot");
+        Files.write(path, new byte[] {1, 2, 3});
+
+        assertThrows(IOException.class, () -> IndexSnapshot.read(path, new ScenarioIndex()));
+        assertTrue(Files.exists(path));
+    }
+
+    @Test
+    void testEmptySnapshotIsRejected() throws IOException {
+        Path path = directory.resolve("index.snapshot");
+        Files.write(path, new byte[0]);
+
+        assertThrows(IOException.class, () -> IndexSnapshot.read(path, new ScenarioIndex()));
+    }
+
+    @Test
+    void testSnapshotLargerThanTwoGigabytesIsRejectedBeforeMapping() throws IOException {
+        Path path = directory.resolve("index.snapshot");
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            // Sparse, so no disk space is used
+            file.setLength(Integer.MAX_VALUE + 1L);
+        }
+
+        IOException e = assertThrows(IOException.class, () -> IndexSnapshot.read(path, new ScenarioIndex()));
+        assertTrue(e.getMessage().contains("2 GB"));
+    }
+
+    private ScenarioItem item(final String prompt, final String response, final String... tokens) {
+        final int[] termIds = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            termIds[i] = index.dictionary().intern(tokens[i]);
+        }
+        return new ScenarioItem(prompt, response, SparseVector.of(termIds, tokens.length));
+    }
+}
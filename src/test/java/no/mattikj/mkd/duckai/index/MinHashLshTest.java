@@ -0,0 +1,82 @@
+package no.mattikj.mkd.duckai.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import no.mattikj.mkd.duckai.domain.SparseVector;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinHashLshTest {
+
+    private static final String[] WORDS = {
+        "duck", "pond", "bread", "lake", "feather", "quack", "river", "swan", "goose", "nest",
+        "egg", "wing", "beak", "water", "reed", "fish", "summer", "winter", "fly", "swim"
+    };
+
+    @Test
+    void testShinglesIgnoreCaseAndWhitespace() {
+        SparseVector shingles = MinHashLsh.shingles("What is a duck");
+        assertEquals(1.0, shingles.cosineSimilarity(MinHashLsh.shingles("  WHAT is   a duck ")), 1e-9);
+        assertEquals(14, shingles.tokenCount());
+        assertEquals(0, MinHashLsh.shingles("   ").size());
+    }
+
+    @Test
+    void testTypoedPromptIsCandidate() {
+        MinHashLsh lsh = new MinHashLsh(20, 3);
+        lsh.add(MinHashLsh.shingles("What is a duck"));
+        lsh.add(MinHashLsh.shingles("Tell me about the weather"));
+        lsh.add(SparseVector.EMPTY);
+
+        int[] candidates = lsh.candidates(MinHashLsh.shingles("Waht is a duck"));
+        assertTrue(candidates.length >= 1 && candidates[0] == 0);
+        assertTrue(lsh.candidates(MinHashLsh.shingles("")).length == 0);
+    }
+
+    @Test
+    void testCandidatesAreAscendingAndUnique() {
+        MinHashLsh lsh = new MinHashLsh(20, 3);
+        lsh.add(MinHashLsh.shingles("What is a duck"));
+        lsh.add(MinHashLsh.shingles("Tell me about the weather"));
+        lsh.add(MinHashLsh.shingles("What is a duck"));
+        lsh.add(MinHashLsh.shingles("what is a DUCK"));
+
+        // Identical prompts share every one of the 20 buckets
+        assertArrayEquals(new int[] {0, 2, 3}, lsh.candidates(MinHashLsh.shingles("What is a duck")));
+    }
+
+    @Test
+    void testInvalidBandsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new MinHashLsh(0, 3));
+        assertThrows(IllegalArgumentException.class, () -> new MinHashLsh(20, 0));
+    }
+
+    @Test
+    void testReportShowsRecallGrowingWithBands() {
+        Random random = new Random(1);
+        List<String> prompts = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            StringBuilder prompt = new StringBuilder();
+            int words = 3 + random.nextInt(4);
+            for (int w = 0; w < words; w++) {
+                prompt.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            prompts.add(prompt.toString().trim());
+        }
+        List<String> queries = LshRecallReport.typoQueries(prompts, 200, random);
+
+        List<LshRecallReport.Row> rows = LshRecallReport.evaluate(prompts, queries, List.of(new int[]{2, 5}, new int[]{20, 3}));
+        assertEquals(2, rows.size());
+        assertEquals(20, rows.get(1).bands());
+        assertTrue(rows.get(1).recall() > 0.9);
+        assertTrue(rows.get(1).recall() > rows.get(0).recall());
+        assertTrue(rows.get(1).averageCandidates() < prompts.size());
+    }
+}
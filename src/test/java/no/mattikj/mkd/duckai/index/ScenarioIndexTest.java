@@ -0,0 +1,377 @@
+package no.mattikj.mkd.duckai.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import no.mattikj.mkd.duckai.domain.ScenarioItem;
+import no.mattikj.mkd.duckai.domain.ScenarioMatch;
+import no.mattikj.mkd.duckai.domain.SparseVector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScenarioIndexTest {
+
+    private static final double THRESHOLD = 0.45;
+
+    private ScenarioIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ScenarioIndex();
+    }
+
+    @Test
+    void testFindBestMatchReturnsMatchingScenario() {
+        index.add(item("duck", "Only the smartest bird.", "duck"));
+        index.add(item("hello", "Hi there!", "hello"));
+
+        assertEquals("Hi there!", index.findBestMatch(vector("hello"), THRESHOLD).response());
+    }
+
+    @Test
+    void testFindBestMatchWithoutSharedTokensReturnsNull() {
+        index.add(item("duck", "Only the smartest bird.", "duck"));
+
+        assertNull(index.findBestMatch(vector("turing"), THRESHOLD));
+        assertNull(index.findBestMatch(SparseVector.EMPTY, THRESHOLD));
+    }
+
+    @Test
+    void testFindBestMatchBelowThresholdReturnsNull() {
+        index.add(item("long", "Long answer", "a", "b", "c", "d", "e", "f"));
+
+        assertNull(index.findBestMatch(vector("a"), THRESHOLD));
+    }
+
+    @Test
+    void testFindBestCandidateIgnoresThreshold() {
+        index.add(item("long", "Long answer", "a", "b", "c", "d", "e", "f"));
+
+        final ScenarioMatch match = index.findBestCandidate(vector("a"));
+        assertEquals("Long answer", match.item().response());
+        assertEquals(1 / Math.sqrt(6), match.score(), 1e-9);
+        assertNull(index.findBestCandidate(vector("turing")));
+    }
+
+    @Test
+    void testTiesAreWonByEarliestScenario() {
+        index.add(item("first", "First", "duck", "pond"));
+        index.add(item("second", "Second", "duck", "pond"));
+
+        assertEquals("First", index.findBestMatch(vector("duck", "pond"), THRESHOLD).response());
+    }
+
+    @Test
+    void testAddAllAppendsScenarios() {
+        index.add(item("duck", "Duck", "duck"));
+        index.addAll(List.of(item("pond", "Pond", "pond"), item("bread", "Bread", "bread")));
+
+        assertEquals(3, index.size());
+        assertEquals("Duck", index.findBestMatch(vector("duck"), THRESHOLD).response());
+        assertEquals("Bread", index.findBestMatch(vector("bread"), THRESHOLD).response());
+    }
+
+    @Test
+    void testEstimatedMemoryGrowsWithScenarios() {
+        long empty = index.estimatedMemoryBytes();
+        index.add(item("duck", "Duck", "duck"));
+        long one = index.estimatedMemoryBytes();
+        index.add(item("duck pond", "A much longer answer about ducks in ponds", "duck", "pond"));
+
+        assertTrue(one > empty);
+        assertTrue(index.estimatedMemoryBytes() > one);
+    }
+
+    @Test
+    void testAddingSameNormalizedPromptReplacesScenario() {
+        index.add(item("What is a duck?", "A bird.", "duck"));
+        index.add(item("pond", "Pond", "pond"));
+        index.addAll(List.of(item("  what IS a\tduck? ", "The smartest bird.", "duck")));
+
+        assertEquals(2, index.size());
+        assertEquals("The smartest bird.", index.findBestMatch(vector("duck"), THRESHOLD).response());
+    }
+
+    @Test
+    void testPromptNormalizerCollapsesWhitespaceAndCase() {
+        assertEquals("what is a duck?", PromptNormalizer.normalize("  What  IS\ta\nDuck? "));
+        assertNull(PromptNormalizer.normalize(null));
+    }
+
+    @Test
+    void testWeightedModesPreferRareTerms() {
+        index.add(item("duck bread", "Bread", "duck", "bread"));
+        index.add(item("duck feather", "Feather", "duck", "feather"));
+        index.add(item("duck lake", "Lake", "duck", "lake"));
+        index.add(item("pond fish", "Fish", "pond", "fish"));
+
+        // Both scenarios share one of two terms; plain cosine falls back to the earliest one
+        assertEquals("Bread", index.findBestMatch(vector("duck", "pond"), ScoringMode.COSINE, 0.0).response());
+        assertEquals("Fish", index.findBestMatch(vector("duck", "pond"), ScoringMode.TF_IDF, 0.0).response());
+        assertEquals("Fish", index.findBestMatch(vector("duck", "pond"), ScoringMode.BM25, 0.0).response());
+    }
+
+    @Test
+    void testWeightedModesScoreBetweenZeroAndOne() {
+        index.add(item("duck bread", "Bread", "duck", "bread"));
+        index.add(item("duck lake", "Lake", "duck", "lake"));
+        index.refreshStatistics();
+
+        assertEquals(1.0, index.findBestCandidate(vector("duck", "bread"), ScoringMode.TF_IDF).score(), 1e-6);
+
+        final double bm25 = index.findBestCandidate(vector("duck", "bread"), ScoringMode.BM25).score();
+        assertTrue(bm25 > 0.0 && bm25 <= 1.0);
+        assertTrue(index.findBestCandidate(vector("duck", "bread", "unknown"), ScoringMode.BM25).score() < bm25);
+    }
+
+    @Test
+    void testReplacedScenariosLeaveDocumentFrequencies() {
+        index.add(item("first", "First", "duck", "pond"));
+        index.add(item("second", "Second", "duck", "lake"));
+        index.add(item("FIRST", "Replaced", "bread", "pond"));
+
+        // Only "Second" still contains "duck", so it is now as rare as "pond"
+        assertEquals("Second", index.findBestMatch(vector("duck", "feather"), ScoringMode.TF_IDF, 0.0).response());
+        assertEquals(
+            index.findBestCandidate(vector("duck"), ScoringMode.BM25).score(),
+            index.findBestCandidate(vector("pond"), ScoringMode.BM25).score(),
+            1e-9
+        );
+    }
+
+    @Test
+    void testFindBestMatchIsEquivalentToLinearScan() {
+        final Random random = new Random(42);
+        final List<ScenarioItem> items = new ArrayList<>();
+        final List<Map<String, Integer>> itemVectors = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            final Map<String, Integer> vector = randomVector(random, 60);
+            final ScenarioItem item = new ScenarioItem("p" + i, "r" + i, toSparseVector(vector));
+            items.add(item);
+            itemVectors.add(vector);
+            index.add(item);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            // Terms from 60 and up are unknown to the index but still count towards the prompt norm
+            final Map<String, Integer> query = randomVector(random, 70);
+            final SparseVector queryVector = toSparseVector(query);
+            assertSame(linearScan(items, itemVectors, query), index.findBestMatch(queryVector, THRESHOLD));
+        }
+    }
+
+    @Test
+    void testFindTopMatchesReturnsBestFirst() {
+        index.add(item("duck", "Duck", "duck"));
+        index.add(item("duck pond", "Duck pond", "duck", "pond"));
+        index.add(item("duck lake", "Duck lake", "duck", "lake"));
+        index.add(item("duck pond bread", "Duck pond bread", "duck", "pond", "bread"));
+
+        final List<ScenarioMatch> top = index.findTopMatches(vector("duck", "pond"), ScoringMode.COSINE, 3, 0.0);
+        assertEquals(List.of("Duck pond", "Duck pond bread", "Duck"), top.stream().map(m -> m.item().response()).toList());
+        assertTrue(top.get(0).score() > top.get(1).score() && top.get(1).score() > top.get(2).score());
+
+        // "Duck" and "Duck lake" both score 1/sqrt(2) against "duck"; the earliest is kept
+        assertEquals("Duck", index.findTopMatches(vector("duck", "lake"), ScoringMode.COSINE, 2, 0.0).get(1).item().response());
+        assertEquals(1, index.findTopMatches(vector("duck", "pond"), ScoringMode.COSINE, 3, 0.9).size());
+        assertTrue(index.findTopMatches(vector("duck"), ScoringMode.COSINE, 0, 0.0).isEmpty());
+    }
+
+    @Test
+    void testFindTopMatchesIsEquivalentToSortedLinearScan() {
+        final Random random = new Random(11);
+        final List<ScenarioItem> items = new ArrayList<>();
+        final List<Map<String, Integer>> itemVectors = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            final Map<String, Integer> vector = randomVector(random, 60);
+            final ScenarioItem item = new ScenarioItem("p" + i, "r" + i, toSparseVector(vector));
+            items.add(item);
+            itemVectors.add(vector);
+            index.add(item);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            final Map<String, Integer> query = randomVector(random, 70);
+            final List<ScenarioItem> expected = new ArrayList<>();
+            for (int doc = 0; doc < items.size(); doc++) {
+                if (cosineSimilarity(query, itemVectors.get(doc)) > 0) {
+                    expected.add(items.get(doc));
+                }
+            }
+            // A stable sort keeps insertion order between equal scores
+            expected.sort((a, b) -> Double.compare(
+                cosineSimilarity(query, itemVectors.get(items.indexOf(b))),
+                cosineSimilarity(query, itemVectors.get(items.indexOf(a)))
+            ));
+
+            final List<ScenarioItem> actual = index.findTopMatches(toSparseVector(query), ScoringMode.COSINE, 5, 0.0)
+                .stream()
+                .map(ScenarioMatch::item)
+                .toList();
+            assertEquals(expected.subList(0, Math.min(5, expected.size())), actual);
+        }
+    }
+
+    @Test
+    void testPrunedSearchIsEquivalentToExhaustiveScoring() {
+        final Random random = new Random(3);
+        for (int i = 0; i < 3_000; i++) {
+            // Low term ids are far more common, as with real prompts; some prompts repeat and replace
+            index.add(new ScenarioItem("p" + random.nextInt(2_500), "r" + i, skewedVector(random)));
+        }
+
+        for (int round = 0; round < 2; round++) {
+            for (final ScoringMode mode : ScoringMode.values()) {
+                for (int i = 0; i < 300; i++) {
+                    final SparseVector query = skewedVector(random);
+                    final ScenarioMatch expected = index.findBestCandidateExhaustively(query, mode);
+                    final ScenarioMatch actual = index.findBestCandidate(query, mode);
+                    if (expected == null) {
+                        assertNull(actual);
+                    } else {
+                        assertSame(expected.item(), actual.item());
+                        assertEquals(expected.score(), actual.score(), 0.0);
+                    }
+                }
+            }
+            index.refreshStatistics();
+        }
+    }
+
+    @Test
+    void testParallelSearchIsEquivalentToSequentialSearch() {
+        final ScenarioIndex parallel = new ScenarioIndex(7, 0);
+        final Random random = new Random(5);
+        for (int i = 0; i < 3_000; i++) {
+            final ScenarioItem item = new ScenarioItem("p" + random.nextInt(2_500), "r" + i, skewedVector(random));
+            index.add(item);
+            parallel.add(item);
+        }
+
+        for (final ScoringMode mode : ScoringMode.values()) {
+            for (int i = 0; i < 200; i++) {
+                final SparseVector query = skewedVector(random);
+                assertEquals(
+                    index.findTopMatches(query, mode, 5, 0.0).stream().map(m -> m.item().response()).toList(),
+                    parallel.findTopMatches(query, mode, 5, 0.0).stream().map(m -> m.item().response()).toList()
+                );
+            }
+        }
+    }
+
+    @Test
+    void testFindSimilarPromptsToleratesTypos() {
+        final ScenarioIndex fuzzy = new ScenarioIndex(1, Integer.MAX_VALUE, new MinHashLsh(20, 3));
+        fuzzy.add(new ScenarioItem("What is a duck", "Duck", SparseVector.EMPTY));
+        fuzzy.add(new ScenarioItem("Tell me about the weather", "Weather", SparseVector.EMPTY));
+        fuzzy.add(new ScenarioItem("WHAT IS A DUCK", "Replaced", SparseVector.EMPTY));
+
+        final List<ScenarioMatch> similar = fuzzy.findSimilarPrompts("Waht is a duck", 5, 0.5);
+        assertEquals(List.of("Replaced"), similar.stream().map(m -> m.item().response()).toList());
+        assertTrue(fuzzy.findSimilarPrompts("Waht is a duck", 5, 0.95).isEmpty());
+        assertEquals(List.of("Tell me about the weather", "WHAT IS A DUCK"), fuzzy.prompts());
+        assertTrue(index.findSimilarPrompts("What is a duck", 5, 0.0).isEmpty());
+    }
+
+    @Test
+    void testSparseVectorCosineMatchesMapCosine() {
+        final Random random = new Random(7);
+        for (int i = 0; i < 1_000; i++) {
+            final Map<String, Integer> v1 = randomVector(random, 20);
+            final Map<String, Integer> v2 = randomVector(random, 20);
+            assertEquals(cosineSimilarity(v1, v2), toSparseVector(v1).cosineSimilarity(toSparseVector(v2)), 0.0);
+        }
+    }
+
+    private static ScenarioItem linearScan(
+        final List<ScenarioItem> items,
+        final List<Map<String, Integer>> itemVectors,
+        final Map<String, Integer> query
+    ) {
+        double bestScore = 0.0;
+        ScenarioItem bestMatch = null;
+        for (int i = 0; i < items.size(); i++) {
+            final double score = cosineSimilarity(query, itemVectors.get(i));
+            if (score > bestScore) {
+                bestScore = score;
+                bestMatch = items.get(i);
+            }
+        }
+        return bestScore >= THRESHOLD ? bestMatch : null;
+    }
+
+    private static double cosineSimilarity(final Map<String, Integer> v1, final Map<String, Integer> v2) {
+        final Set<String> allKeys = new HashSet<>(v1.keySet());
+        allKeys.addAll(v2.keySet());
+
+        double dot = 0.0;
+        double norm1 = 0.0;
+        double norm2 = 0.0;
+        for (final String key : allKeys) {
+            final int a = v1.getOrDefault(key, 0);
+            final int b = v2.getOrDefault(key, 0);
+            dot += a * b;
+            norm1 += a * a;
+            norm2 += b * b;
+        }
+
+        if (norm1 == 0 || norm2 == 0) return 0.0;
+        return dot / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    }
+
+    private static Map<String, Integer> randomVector(final Random random, final int vocabulary) {
+        final Map<String, Integer> vector = new HashMap<>();
+        final int tokens = 1 + random.nextInt(5);
+        for (int i = 0; i < tokens; i++) {
+            vector.merge(String.valueOf(random.nextInt(vocabulary)), 1, Integer::sum);
+        }
+        return vector;
+    }
+
+    private static SparseVector skewedVector(final Random random) {
+        final int tokens = 1 + random.nextInt(6);
+        final int[] termIds = new int[tokens];
+        for (int i = 0; i < tokens; i++) {
+            termIds[i] = (int) Math.pow(random.nextInt(40), 2);
+        }
+        return SparseVector.of(termIds, tokens);
+    }
+
+    /**
+     * Uses the numeric token itself as term id, and a negative id for tokens from 60 and up.
+     */
+    private static SparseVector toSparseVector(final Map<String, Integer> vector) {
+        final int[] termIds = new int[vector.values().stream().mapToInt(Integer::intValue).sum()];
+        int length = 0;
+        for (final Map.Entry<String, Integer> entry : vector.entrySet()) {
+            final int term = Integer.parseInt(entry.getKey());
+            for (int i = 0; i < entry.getValue(); i++) {
+                termIds[length++] = term < 60 ? term : -term;
+            }
+        }
+        return SparseVector.of(termIds, length);
+    }
+
+    private ScenarioItem item(final String prompt, final String response, final String... tokens) {
+        return new ScenarioItem(prompt, response, vector(tokens));
+    }
+
+    private SparseVector vector(final String... tokens) {
+        final int[] termIds = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            termIds[i] = index.dictionary().intern(tokens[i]);
+        }
+        return SparseVector.of(termIds, tokens.length);
+    }
+}
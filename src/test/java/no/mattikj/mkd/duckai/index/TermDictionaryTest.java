@@ -0,0 +1,53 @@
+package no.mattikj.mkd.duckai.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TermDictionaryTest {
+
+    @Test
+    void testLookupFromBufferMatchesLookupByString() {
+        final TermDictionary dictionary = new TermDictionary();
+        assertEquals(0, dictionary.intern("duck"));
+        assertEquals(1, dictionary.intern("blåbær"));
+
+        final char[] buffer = "blåbærtrollet".toCharArray();
+        assertEquals(1, dictionary.lookup(buffer, 6, "blåbær".hashCode()));
+        assertEquals(TermDictionary.UNKNOWN, dictionary.lookup(buffer, 13, "blåbærtrollet".hashCode()));
+        assertEquals(TermDictionary.UNKNOWN, dictionary.lookup("pond"));
+    }
+
+    @Test
+    void testInternFromBufferAssignsIdsInFirstSeenOrder() {
+        final TermDictionary dictionary = new TermDictionary();
+        final char[] buffer = "pondduck".toCharArray();
+
+        assertEquals(0, dictionary.intern(buffer, 4, "pond".hashCode()));
+        assertEquals(0, dictionary.intern("pond"));
+        assertEquals(1, dictionary.intern("duck"));
+        assertEquals(1, dictionary.intern("duck".toCharArray(), 4, "duck".hashCode()));
+        assertEquals(List.of("pond", "duck"), dictionary.terms());
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    void testIdsSurviveGrowing() {
+        final TermDictionary dictionary = new TermDictionary();
+        final List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            terms.add("term" + i);
+            assertEquals(i, dictionary.intern("term" + i));
+        }
+
+        for (int i = 0; i < terms.size(); i++) {
+            final String term = terms.get(i);
+            assertEquals(i, dictionary.lookup(term.toCharArray(), term.length(), term.hashCode()));
+            assertEquals(term, dictionary.term(i));
+        }
+        assertEquals(terms, dictionary.terms());
+    }
+}
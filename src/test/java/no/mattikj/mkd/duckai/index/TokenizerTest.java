@@ -0,0 +1,95 @@
+package no.mattikj.mkd.duckai.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import no.mattikj.mkd.duckai.domain.SparseVector;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenizerTest {
+
+    private static final Set<String> STOPWORDS = Set.of("the", "is", "a", "what");
+
+    private final Tokenizer words = Tokenizer.words(STOPWORDS);
+
+    @Test
+    void testWordsMatchRegexSplitForAsciiText() {
+        final String alphabet = "abcXYZ019_ ?!.,'-\t\n";
+        final Random random = new Random(17);
+        for (int i = 0; i < 2_000; i++) {
+            final StringBuilder text = new StringBuilder();
+            final int length = random.nextInt(30);
+            for (int c = 0; c < length; c++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            final List<String> expected = Arrays.stream(text.toString().toLowerCase().split("\\W+"))
+                .filter(token -> !token.isBlank() && !STOPWORDS.contains(token))
+                .toList();
+            assertEquals(expected, tokens(words, text.toString()));
+        }
+    }
+
+    @Test
+    void testNorwegianWordsAreKeptWhole() {
+        assertEquals(List.of("hvor", "bor", "blåbærtrollet", "i", "østfold"), tokens(words, "Hvor bor BLÅBÆRTROLLET i Østfold?"));
+        assertEquals(List.of("æ", "ø", "å"), tokens(words, "Æ-Ø-Å"));
+    }
+
+    @Test
+    void testStopwordsAreSkippedInAnyCase() {
+        assertEquals(List.of("duck"), tokens(words, "What IS the duck?"));
+        assertEquals(List.of("whats", "up"), tokens(words, "whats up"));
+    }
+
+    @Test
+    void testTitleWordsKeepParenthesesAndDropOtherPunctuation() {
+        final Tokenizer titleWords = Tokenizer.titleWords(STOPWORDS);
+        assertEquals(List.of("java", "(programming", "language)"), tokens(titleWords, "What is Java (programming language)?"));
+        assertEquals(List.of("whats", "up"), tokens(titleWords, "  What's   up! "));
+    }
+
+    @Test
+    void testVectorizeGivesUnknownTokensTemporaryIds() {
+        final TermDictionary dictionary = new TermDictionary();
+        final SparseVector indexed = words.vectorizeForIndex("Duck pond duck", dictionary);
+        assertArrayEquals(new int[]{0, 1}, indexed.terms());
+        assertArrayEquals(new float[]{2, 1}, indexed.weights());
+
+        final SparseVector prompt = words.vectorize("duck lake lake river", dictionary);
+        assertArrayEquals(new int[]{0}, prompt.terms());
+        assertEquals(4, prompt.tokenCount());
+        assertEquals(Math.sqrt(1 + 4 + 1), prompt.norm(), 1e-9);
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    void testVectorizeMatchesKnownTermsWithoutInterningUnknownOnes() {
+        final TermDictionary dictionary = new TermDictionary();
+        words.vectorizeForIndex("Hvor bor blåbærtrollet", dictionary);
+
+        final SparseVector prompt = words.vectorize("BLÅBÆRTROLLET bor ved bekken bekken i skogen", dictionary);
+        assertArrayEquals(new int[]{1, 2}, prompt.terms());
+        assertEquals(7, prompt.tokenCount());
+        // Two known terms, "bekken" twice and three other unknown terms
+        assertEquals(Math.sqrt(1 + 1 + 4 + 1 + 1 + 1), prompt.norm(), 1e-9);
+        assertEquals(3, dictionary.size());
+    }
+
+    private static List<String> tokens(final Tokenizer tokenizer, final String text) {
+        final List<String> tokens = new ArrayList<>();
+        tokenizer.forEachToken(text, (token, length, hash) -> {
+            final String value = new String(token, 0, length);
+            assertEquals(value.hashCode(), hash);
+            tokens.add(value);
+        });
+        return tokens;
+    }
+}
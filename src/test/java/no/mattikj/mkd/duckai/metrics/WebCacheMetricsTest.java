@@ -0,0 +1,29 @@
+package no.mattikj.mkd.duckai.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import no.mattikj.mkd.duckai.cache.WebResponseCache;
+import no.mattikj.mkd.duckai.domain.WebSearchType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WebCacheMetricsTest {
+
+    @Test
+    void testCoalescedLookupsAreCounted() {
+        WebResponseCache cache = new WebResponseCache(null, 100, 60_000, 60_000, 0, 1_000, false);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new WebCacheMetrics(cache).bindTo(registry);
+
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        cache.get(WebSearchType.WIKI, "Java", () -> upstream);
+        cache.get(WebSearchType.WIKI, "Java", () -> upstream);
+        upstream.complete("Java is an island.");
+
+        assertEquals(1.0, registry.get("duckai.web.coalesced").functionCounter().count());
+    }
+}
@@ -0,0 +1,135 @@
+package no.mattikj.mkd.duckai.resilience;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long MILLIS = 1_000_000L;
+    private static final CircuitBreaker.Settings SETTINGS = new CircuitBreaker.Settings(10, 4, 0.5, 0.8, 1_000, 30_000, 2);
+
+    private AtomicLong now;
+    private CircuitBreaker breaker;
+    private List<CircuitBreaker.Transition> transitions;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1_000 * MILLIS);
+        breaker = new CircuitBreaker("test", SETTINGS, now::get);
+        transitions = new ArrayList<>();
+        breaker.onTransition(transitions::add);
+    }
+
+    @Test
+    void testStaysClosedBelowMinimumCalls() {
+        call(true);
+        call(true);
+        call(true);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void testOpensAtFailureRateThreshold() {
+        call(false);
+        call(true);
+        call(false);
+        call(true);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(List.of(new CircuitBreaker.Transition("test", CircuitBreaker.State.CLOSED, CircuitBreaker.State.OPEN)), transitions);
+    }
+
+    @Test
+    void testOpensAtSlowCallRateThreshold() {
+        for (int i = 0; i < 4; i++) {
+            breaker.tryAcquirePermission();
+            breaker.onResult(1_500 * MILLIS, false);
+            breaker.releasePermission();
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void testOldResultsLeaveTheWindow() {
+        call(true);
+        for (int i = 0; i < 9; i++) {
+            call(false);
+        }
+        // The oldest failure leaves the full window as the next one enters it, so only four of ten fail
+        for (int i = 0; i < 4; i++) {
+            call(true);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void testHalfOpenClosesAfterSuccessfulTrials() {
+        openCircuit();
+        now.addAndGet(30_000 * MILLIS);
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+
+        breaker.onResult(10 * MILLIS, false);
+        breaker.releasePermission();
+        breaker.onResult(10 * MILLIS, false);
+        breaker.releasePermission();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(CircuitBreaker.State.CLOSED, transitions.get(transitions.size() - 1).to());
+    }
+
+    @Test
+    void testHalfOpenReopensOnFailedTrial() {
+        openCircuit();
+        now.addAndGet(30_000 * MILLIS);
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onResult(10 * MILLIS, true);
+        breaker.releasePermission();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void testReleasedTrialWithoutResultFreesItsSlot() {
+        openCircuit();
+        now.addAndGet(30_000 * MILLIS);
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.releasePermission();
+
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    private void openCircuit() {
+        for (int i = 0; i < 4; i++) {
+            call(true);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    private void call(final boolean failed) {
+        if (breaker.tryAcquirePermission()) {
+            breaker.onResult(10 * MILLIS, failed);
+            breaker.releasePermission();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package no.mattikj.mkd.duckai.resilience;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketRateLimiterTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    private AtomicLong now;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1_000 * MILLIS);
+    }
+
+    @Test
+    void testFirstPermitIsImmediate() {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("test", 1_000, 1, 5_000, now::get);
+
+        assertEquals(0, limiter.reserve());
+    }
+
+    @Test
+    void testPermitsAreQueuedOneIntervalApart() {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("test", 1_000, 1, 5_000, now::get);
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(1_000 * MILLIS, limiter.reserve());
+        assertEquals(2_000 * MILLIS, limiter.reserve());
+    }
+
+    @Test
+    void testBurstAllowsImmediatePermits() {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("test", 1_000, 3, 5_000, now::get);
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(1_000 * MILLIS, limiter.reserve());
+    }
+
+    @Test
+    void testPermitsRefillOverTime() {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("test", 1_000, 2, 5_000, now::get);
+
+        limiter.reserve();
+        limiter.reserve();
+        now.addAndGet(10_000 * MILLIS);
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(1_000 * MILLIS, limiter.reserve());
+    }
+
+    @Test
+    void testPermitBeyondMaxWaitIsRefused() {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("test", 1_000, 1, 1_500, now::get);
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(1_000 * MILLIS, limiter.reserve());
+        assertEquals(-1, limiter.reserve());
+    }
+
+    @Test
+    void testRefusedAcquireFailsFast() {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("test", 1_000, 1, 0, now::get);
+
+        assertTrue(limiter.acquire().isDone());
+        final CompletableFuture<Void> refused = limiter.acquire();
+        assertTrue(refused.isCompletedExceptionally());
+    }
+
+    @Test
+    void testConcurrentCallersGetDistinctSlots() throws Exception {
+        final TokenBucketRateLimiter limiter =
+            new TokenBucketRateLimiter("test", 1_000, 1, 1_000_000, now::get);
+        final Set<Long> waits = ConcurrentHashMap.newKeySet();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        for (int i = 0; i < 200; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                waits.add(limiter.reserve());
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(200, waits.size());
+    }
+}
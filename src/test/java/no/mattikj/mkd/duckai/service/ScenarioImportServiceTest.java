@@ -0,0 +1,100 @@
+package no.mattikj.mkd.duckai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import no.mattikj.mkd.duckai.dto.ImportProgress;
+import no.mattikj.mkd.duckai.dto.LearnItemResult;
+import no.mattikj.mkd.duckai.dto.PromptLearnRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ScenarioImportServiceTest {
+
+    private ScenarioResponderEngine engine;
+    private ScenarioImportService importService;
+    private List<List<String>> learnedBatches;
+
+    @BeforeEach
+    void setUp() {
+        engine = mock(ScenarioResponderEngine.class);
+        importService = new ScenarioImportService(engine, new ObjectMapper());
+        ReflectionTestUtils.setField(importService, "batchSize", 2);
+
+        learnedBatches = new ArrayList<>();
+        when(engine.learnScenariosInBulk(any())).thenAnswer(invocation -> {
+            List<PromptLearnRequest> batch = invocation.getArgument(0);
+            List<LearnItemResult> results = new ArrayList<>();
+            List<String> prompts = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                boolean valid = batch.get(i).getPrompt() != null && !batch.get(i).getPrompt().isBlank();
+                results.add(valid ? LearnItemResult.learned(i, (long) i) : LearnItemResult.failed(i, "Empty"));
+                prompts.add(batch.get(i).getPrompt());
+            }
+            learnedBatches.add(prompts);
+            return results;
+        });
+    }
+
+    @Test
+    void testImportNewlineDelimitedJsonInBatches() {
+        List<ImportProgress> progress = new ArrayList<>();
+        ImportProgress result = importService.importScenarios(stream("""
+            {"prompt": "First?", "answer": "One"}
+            {"prompt": "", "answer": "Empty"}
+            {"prompt": "Third?", "answer": "Three"}
+            """), progress::add);
+
+        verify(engine, times(2)).learnScenariosInBulk(any());
+        assertEquals(List.of("First?", ""), learnedBatches.get(0));
+        assertEquals(3, result.getReceived());
+        assertEquals(2, result.getLearned());
+        assertEquals(1, result.getFailed());
+        assertTrue(result.isFinished());
+        assertNull(result.getError());
+        assertEquals(3, progress.size());
+    }
+
+    @Test
+    void testImportJsonArray() {
+        ImportProgress result = importService.importScenarios(stream("""
+            [{"prompt": "First?", "answer": "One"}, {"prompt": "Second?", "answer": "Two"}]
+            """), progress -> { });
+
+        assertEquals(2, result.getReceived());
+        assertEquals(2, result.getLearned());
+    }
+
+    @Test
+    void testImportStopsAtMalformedRecordAndKeepsEarlierRecords() {
+        ImportProgress result = importService.importScenarios(stream("""
+            {"prompt": "First?", "answer": "One"}
+            {"prompt": "Second?", "answer":
+            """), progress -> { });
+
+        assertEquals(1, result.getLearned());
+        assertNotNull(result.getError());
+        assertTrue(result.isFinished());
+    }
+
+    private static InputStream stream(final String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
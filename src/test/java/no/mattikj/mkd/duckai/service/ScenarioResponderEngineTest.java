@@ -1,40 +1,66 @@
 package no.mattikj.mkd.duckai.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentMatchers;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
+import no.mattikj.mkd.duckai.cache.PromptResponseCache;
 import no.mattikj.mkd.duckai.domain.ResponseSourceType;
 import no.mattikj.mkd.duckai.domain.Scenario;
 import no.mattikj.mkd.duckai.domain.WebSearchType;
+import no.mattikj.mkd.duckai.dto.LearnItemResult;
 import no.mattikj.mkd.duckai.dto.PromptLearnRequest;
 import no.mattikj.mkd.duckai.dto.PromptResponse;
+import no.mattikj.mkd.duckai.dto.ScenarioSuggestion;
+import no.mattikj.mkd.duckai.index.ScoringMode;
+import no.mattikj.mkd.duckai.metrics.DuckAiMetrics;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class ScenarioResponderEngineTest {
 
     private ScenarioService scenarioService;
     private WebSearchEngine webSearchEngine;
+    private PromptResponseCache responseCache;
+    private SimpleMeterRegistry meterRegistry;
     private ScenarioResponderEngine engine;
 
+    @TempDir
+    Path snapshotDirectory;
+
     @BeforeEach
     void setUp() {
         scenarioService = mock(ScenarioService.class);
         webSearchEngine = mock(WebSearchEngine.class);
-        engine = new ScenarioResponderEngine(scenarioService, webSearchEngine);
+        responseCache = new PromptResponseCache(100, 60_000, 60_000);
+        meterRegistry = new SimpleMeterRegistry();
+        engine = new ScenarioResponderEngine(scenarioService, webSearchEngine, responseCache, new DuckAiMetrics(meterRegistry));
 
         // Mock scenarioService to return some predefined scenarios
-        when(scenarioService.loadScenarios()).thenReturn(List.of(
-            new Scenario("What is a duck?", "Only the smartest bird."),
-            new Scenario("Hello", "Hi there!")
-        ));
+        stubScenariosAfter(0L,
+            new Scenario(1L, 1L, "What is a duck?", "Only the smartest bird."),
+            new Scenario(2L, 2L, "Hello", "Hi there!")
+        );
 
         // Initialize engine (calls reloadScenarios internally)
         engine.init();
@@ -68,6 +94,154 @@ class ScenarioResponderEngineTest {
         assertEquals("You must speak for me to quack.", response.getReply());
     }
 
+    @Test
+    void testScoringModeCanBeSwitchedAtRuntime() {
+        for (ScoringMode mode : ScoringMode.values()) {
+            engine.setScoringMode(mode);
+            PromptResponse response = engine.generateResponse("What is a duck?");
+            assertEquals(ResponseSourceType.LOCAL, response.getSource());
+            assertEquals("Only the smartest bird.", response.getReply());
+        }
+        assertEquals(ScoringMode.BM25, engine.getScoringMode());
+    }
+
+    @Test
+    void testSuggestScenariosReturnsClosestPromptsFirst() {
+        List<ScenarioSuggestion> suggestions = engine.suggestScenarios("Hello duck", 5);
+        assertEquals(List.of("What is a duck?", "Hello"), suggestions.stream().map(ScenarioSuggestion::getPrompt).toList());
+        assertEquals(1 / Math.sqrt(2), suggestions.get(0).getScore(), 1e-9);
+
+        assertEquals(1, engine.suggestScenarios("Hello duck", 1).size());
+        assertTrue(engine.suggestScenarios("Who was Alan Turing?", 5).isEmpty());
+        assertTrue(engine.suggestScenarios(" ", 5).isEmpty());
+    }
+
+    @Test
+    void testTypoedPromptMatchesScenarioWithLshEnabled() {
+        ReflectionTestUtils.setField(engine, "lshEnabled", true);
+        engine.reloadScenarios();
+
+        PromptResponse response = engine.generateResponse("What is a dcuk?");
+        assertEquals(ResponseSourceType.LOCAL, response.getSource());
+        assertEquals("Only the smartest bird.", response.getReply());
+    }
+
+    @Test
+    void testRepeatedPromptIsServedFromCache() {
+        when(webSearchEngine.searchInternetForResponse("Who was Alan Turing?", WebSearchType.WIKI))
+            .thenReturn("Alan Turing was a mathematician.");
+
+        engine.generateResponse("Who was Alan Turing?");
+        PromptResponse response = engine.generateResponse("  who was ALAN turing? ");
+
+        assertEquals("Alan Turing was a mathematician.", response.getReply());
+        verify(webSearchEngine, times(1)).searchInternetForResponse(any(), any());
+        assertEquals(1L, responseCache.stats().get("hits"));
+    }
+
+    @Test
+    void testLearningInvalidatesCachedResponses() {
+        assertEquals("Only the smartest bird.", engine.generateResponse("What is a duck?").getReply());
+        when(scenarioService.saveScenario(ArgumentMatchers.any()))
+            .thenReturn(new Scenario(1L, 3L, "what is a duck?", "A duck is a bird."));
+
+        engine.learn(new PromptLearnRequest("what is a duck?", "A duck is a bird."));
+
+        assertEquals("A duck is a bird.", engine.generateResponse("What is a duck?").getReply());
+    }
+
+    @Test
+    void testFallbackAndJokeResponsesAreNotCached() {
+        when(webSearchEngine.searchInternetForResponse(any(), eq(WebSearchType.JOKE))).thenReturn("Why did the duck cross the road?");
+
+        engine.generateResponse("Who was Alan Turing?");
+        engine.generateResponse("Who was Alan Turing?");
+        engine.generateResponse("Tell me a joke");
+        engine.generateResponse("Tell me a joke");
+
+        verify(webSearchEngine, times(2)).searchInternetForResponse("Who was Alan Turing?", WebSearchType.WIKI);
+        verify(webSearchEngine, times(2)).searchInternetForResponse("Tell me a joke", WebSearchType.JOKE);
+        assertEquals(0L, responseCache.stats().get("size"));
+    }
+
+    @Test
+    void testResponsesAreCountedAndTimedByStage() {
+        when(webSearchEngine.searchInternetForResponse("Who was Alan Turing?", WebSearchType.WIKI))
+            .thenReturn("Alan Turing was a mathematician.");
+
+        engine.generateResponse("What is a duck?");
+        engine.generateResponse("Who was Alan Turing?");
+        engine.generateResponse("Who was Alan Turing?");
+
+        assertEquals(1.0, responses("local", "scenario"));
+        assertEquals(1.0, responses("internet", "internet"));
+        assertEquals(1.0, responses("internet", "cached"));
+        assertEquals(3L, meterRegistry.get("duckai.response.stage").tag("stage", "classify").timer().count());
+        assertEquals(2L, meterRegistry.get("duckai.response.stage").tag("stage", "local_match").timer().count());
+        assertEquals(1L, meterRegistry.get("duckai.response.stage").tag("stage", "web_fetch").timer().count());
+    }
+
+    @Test
+    void testIndexIsReadyOnceFirstBuildCompletes() {
+        ScenarioResponderEngine fresh = new ScenarioResponderEngine(
+            scenarioService, webSearchEngine, responseCache, new DuckAiMetrics(new SimpleMeterRegistry()));
+        assertFalse(fresh.isIndexReady());
+        assertEquals(-1L, fresh.lastReloadCompletedAtMillis());
+
+        fresh.scheduledReload();
+        assertFalse(fresh.isIndexReady());
+
+        fresh.init();
+        assertTrue(fresh.isIndexReady());
+        assertTrue(fresh.lastReloadDurationMillis() >= 0);
+        assertTrue(fresh.lastReloadCompletedAtMillis() > 0);
+    }
+
+    @Test
+    void testOffHeapAnswersAreDecodedWhenReturned() {
+        ReflectionTestUtils.setField(engine, "offHeapAnswers", true);
+        engine.reloadScenarios();
+
+        assertTrue(engine.indexOffHeapBytes() > 0);
+        assertEquals("Only the smartest bird.", engine.generateResponse("What is a duck?").getReply());
+        assertEquals("Hi there!", engine.generateResponse("Hello").getReply());
+    }
+
+    @Test
+    void testStartupRestoresSnapshotAndLoadsOnlyNewerScenarios() {
+        String snapshotPath = snapshotDirectory.resolve("index.snapshot").toString();
+        ReflectionTestUtils.setField(engine, "snapshotPath", snapshotPath);
+        engine.reloadScenarios();
+
+        stubScenariosAfter(2L, new Scenario(3L, 3L, "Goodbye", "See you later!"));
+        ScenarioResponderEngine restarted = new ScenarioResponderEngine(
+            scenarioService, webSearchEngine, responseCache, new DuckAiMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(restarted, "snapshotPath", snapshotPath);
+        restarted.init();
+
+        assertTrue(restarted.isIndexReady());
+        assertEquals(3, restarted.scenarioCount());
+        assertEquals("Only the smartest bird.", restarted.generateResponse("What is a duck?").getReply());
+        assertEquals("See you later!", restarted.generateResponse("Goodbye").getReply());
+        // Once in setUp and once above, but never by the restarted engine
+        verify(scenarioService, times(2)).forEachScenarioChangedAfter(eq(0L), any());
+        verify(scenarioService).forEachScenarioChangedAfter(eq(2L), any());
+    }
+
+    @Test
+    void testCorruptSnapshotFallsBackToFullLoad() throws Exception {
+        Path snapshot = snapshotDirectory.resolve("index.snapshot");
+        Files.write(snapshot, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        ScenarioResponderEngine restarted = new ScenarioResponderEngine(
+            scenarioService, webSearchEngine, responseCache, new DuckAiMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(restarted, "snapshotPath", snapshot.toString());
+        restarted.init();
+
+        assertTrue(restarted.isIndexReady());
+        assertEquals(2, restarted.scenarioCount());
+        verify(scenarioService, times(2)).forEachScenarioChangedAfter(eq(0L), any());
+    }
+
     @Test
     void testClassifyPrompt() {
         // JOKE
@@ -83,7 +257,8 @@ class ScenarioResponderEngineTest {
     @Test
     void testLearnScenario() {
         PromptLearnRequest request = new PromptLearnRequest("New prompt?", "New answer!");
-        when(scenarioService.addScenario(ArgumentMatchers.any())).thenReturn(true);
+        when(scenarioService.saveScenario(ArgumentMatchers.any()))
+            .thenReturn(new Scenario(3L, 3L, "New prompt?", "New answer!"));
 
         boolean success = engine.learn(request);
         assertTrue(success);
@@ -93,4 +268,181 @@ class ScenarioResponderEngineTest {
         assertEquals("New answer!", response.getReply());
         assertEquals(ResponseSourceType.LOCAL, response.getSource());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testLearnScenariosInBulkIndexesStoredScenarios() {
+        List<PromptLearnRequest> requests = List.of(
+            new PromptLearnRequest("Where do ducks live?", "In ponds, mostly."),
+            new PromptLearnRequest("", "Nothing")
+        );
+        when(scenarioService.saveScenarios(eq(requests), any())).thenAnswer(invocation -> {
+            Consumer<List<Scenario>> onStored = invocation.getArgument(1);
+            onStored.accept(List.of(new Scenario(3L, 3L, "Where do ducks live?", "In ponds, mostly.")));
+            return List.of(LearnItemResult.learned(0, 3L), LearnItemResult.failed(1, "Prompt and answer must not be empty"));
+        });
+
+        List<LearnItemResult> results = engine.learnScenariosInBulk(requests);
+
+        assertEquals(2, results.size());
+        assertEquals(3, engine.scenarioCount());
+        assertEquals("In ponds, mostly.", engine.generateResponse("Where do ducks live?").getReply());
+    }
+
+    @Test
+    void testLearningStoredPromptReplacesScenario() {
+        when(scenarioService.saveScenario(ArgumentMatchers.any()))
+            .thenReturn(new Scenario(1L, 3L, "what is a duck?", "A duck is a bird."));
+
+        assertTrue(engine.learn(new PromptLearnRequest("what is a duck?", "A duck is a bird.")));
+
+        assertEquals(2, engine.scenarioCount());
+        assertEquals("A duck is a bird.", engine.generateResponse("What is a duck?").getReply());
+    }
+
+    @Test
+    void testReloadChangedScenariosAddsOnlyNewScenarios() {
+        stubScenariosAfter(2L, new Scenario(3L, 3L, "Where do ducks live?", "In ponds, mostly."));
+
+        engine.reloadChangedScenarios();
+
+        assertEquals(3, engine.scenarioCount());
+        PromptResponse response = engine.generateResponse("Where do ducks live?");
+        assertEquals("In ponds, mostly.", response.getReply());
+        assertEquals(ResponseSourceType.LOCAL, response.getSource());
+    }
+
+    @Test
+    void testReloadChangedScenariosPicksUpUpdatedAnswers() {
+        // Learned on another instance: the upsert keeps the id and takes a new version
+        stubScenariosAfter(2L, new Scenario(1L, 3L, "What is a duck?", "A duck is a bird."));
+
+        engine.reloadChangedScenarios();
+
+        assertEquals(2, engine.scenarioCount());
+        assertEquals("A duck is a bird.", engine.generateResponse("What is a duck?").getReply());
+    }
+
+    @Test
+    void testStartupFromSnapshotPicksUpUpdatedAnswers() {
+        String snapshotPath = snapshotDirectory.resolve("index.snapshot").toString();
+        ReflectionTestUtils.setField(engine, "snapshotPath", snapshotPath);
+        engine.reloadScenarios();
+
+        stubScenariosAfter(2L, new Scenario(2L, 3L, "Hello", "Hello yourself!"));
+        ScenarioResponderEngine restarted = new ScenarioResponderEngine(
+            scenarioService, webSearchEngine, responseCache, new DuckAiMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(restarted, "snapshotPath", snapshotPath);
+        restarted.init();
+
+        assertEquals(2, restarted.scenarioCount());
+        assertEquals("Hello yourself!", restarted.generateResponse("Hello").getReply());
+    }
+
+    @Test
+    void testReloadChangedScenariosSkipsLearnedScenarios() {
+        when(scenarioService.saveScenario(ArgumentMatchers.any()))
+            .thenReturn(new Scenario(3L, 3L, "New prompt?", "New answer!"));
+        stubScenariosAfter(2L,
+            new Scenario(3L, 3L, "New prompt?", "New answer!"),
+            new Scenario(4L, 4L, "Where do ducks live?", "In ponds, mostly.")
+        );
+
+        engine.learn(new PromptLearnRequest("New prompt?", "New answer!"));
+        engine.reloadChangedScenarios();
+
+        assertEquals(4, engine.scenarioCount());
+    }
+
+    @Test
+    void testReloadScenariosKeepsScenariosLearnedDuringReload() {
+        when(scenarioService.saveScenario(ArgumentMatchers.any()))
+            .thenReturn(new Scenario(3L, 3L, "New prompt?", "New answer!"));
+        // Stored after the scan has passed its version, so the scan does not return it
+        doAnswer(invocation -> {
+            Consumer<Scenario> consumer = invocation.getArgument(1);
+            consumer.accept(new Scenario(1L, 1L, "What is a duck?", "Only the smartest bird."));
+            consumer.accept(new Scenario(2L, 2L, "Hello", "Hi there!"));
+            engine.learn(new PromptLearnRequest("New prompt?", "New answer!"));
+            return null;
+        }).when(scenarioService).forEachScenarioChangedAfter(eq(0L), any());
+
+        engine.reloadScenarios();
+
+        assertEquals(3, engine.scenarioCount());
+        assertEquals("New answer!", engine.generateResponse("New prompt?").getReply());
+    }
+
+    @Test
+    void testReloadScenariosKeepsNewerAnswerOfScenarioLearnedBefore() {
+        when(scenarioService.saveScenario(ArgumentMatchers.any()))
+            .thenReturn(new Scenario(3L, 3L, "New prompt?", "New answer!"));
+        engine.learn(new PromptLearnRequest("New prompt?", "New answer!"));
+
+        // Changed on another instance before the full rebuild
+        stubScenariosAfter(0L,
+            new Scenario(1L, 1L, "What is a duck?", "Only the smartest bird."),
+            new Scenario(2L, 2L, "Hello", "Hi there!"),
+            new Scenario(3L, 4L, "New prompt?", "Newer answer!")
+        );
+        engine.reloadScenarios();
+
+        assertEquals(3, engine.scenarioCount());
+        assertEquals("Newer answer!", engine.generateResponse("New prompt?").getReply());
+    }
+
+    @Test
+    void testHedgedModeReturnsUncertainMatchWhenBudgetRunsOut() {
+        enableHedging(50);
+        // One shared token out of five scores just below the threshold
+        when(webSearchEngine.searchInternetForResponseAsync(any(), eq(WebSearchType.WIKI)))
+            .thenReturn(new CompletableFuture<>());
+
+        PromptResponse response = engine.generateResponse("duck pond bread lake feather");
+        assertEquals(ResponseSourceType.LOCAL, response.getSource());
+        assertEquals("Only the smartest bird.", response.getReply());
+    }
+
+    @Test
+    void testHedgedModePrefersWebAnswerWithinBudget() {
+        enableHedging(1_000);
+        when(webSearchEngine.searchInternetForResponseAsync(any(), eq(WebSearchType.WIKI)))
+            .thenReturn(CompletableFuture.completedFuture("Ducks are waterfowl."));
+
+        PromptResponse response = engine.generateResponse("duck pond bread lake feather");
+        assertEquals(ResponseSourceType.INTERNET, response.getSource());
+        assertEquals("Ducks are waterfowl.", response.getReply());
+    }
+
+    @Test
+    void testHedgedModeFallsBackWithoutUncertainMatch() {
+        enableHedging(50);
+        when(webSearchEngine.searchInternetForResponseAsync(any(), eq(WebSearchType.WIKI)))
+            .thenReturn(new CompletableFuture<>());
+
+        PromptResponse response = engine.generateResponse("Who was Alan Turing?");
+        assertEquals(ResponseSourceType.LOCAL, response.getSource());
+        assertEquals("I have no idea how to respond to that yet.", response.getReply());
+    }
+
+    private double responses(final String source, final String outcome) {
+        return meterRegistry.get("duckai.responses")
+            .tags("source", source, "type", "other", "outcome", outcome)
+            .counter()
+            .count();
+    }
+
+    private void enableHedging(final long latencyBudgetMillis) {
+        ReflectionTestUtils.setField(engine, "hedgeEnabled", true);
+        ReflectionTestUtils.setField(engine, "latencyBudgetMillis", latencyBudgetMillis);
+    }
+
+    private void stubScenariosAfter(final long lastVersion, final Scenario... scenarios) {
+        doAnswer(invocation -> {
+            Consumer<Scenario> consumer = invocation.getArgument(1);
+            for (Scenario scenario : scenarios) {
+                consumer.accept(scenario);
+            }
+            return null;
+        }).when(scenarioService).forEachScenarioChangedAfter(eq(lastVersion), any());
+    }
+}
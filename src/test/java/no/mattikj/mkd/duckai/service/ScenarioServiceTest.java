@@ -3,18 +3,27 @@ package no.mattikj.mkd.duckai.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import no.mattikj.mkd.duckai.dao.ScenarioDAO;
 import no.mattikj.mkd.duckai.domain.Scenario;
+import no.mattikj.mkd.duckai.dto.LearnItemResult;
 import no.mattikj.mkd.duckai.dto.PromptLearnRequest;
 import no.mattikj.mkd.duckai.dto.ScenarioDto;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -33,37 +42,34 @@ class ScenarioServiceTest {
     }
 
     @Test
-    void testLoadScenarios() {
-        ScenarioDto dto1 = new ScenarioDto();
-        dto1.setPrompt("What is a duck?");
-        dto1.setAnswer("Only the smartest bird.");
-
-        ScenarioDto dto2 = new ScenarioDto();
-        dto2.setPrompt("Hello");
-        dto2.setAnswer("Hi there!");
-
-        when(scenarioDAO.getAllScenarios()).thenReturn(List.of(dto1, dto2));
-
-        List<Scenario> scenarios = scenarioService.loadScenarios();
-        assertEquals(2, scenarios.size());
-
-        assertEquals("What is a duck?", scenarios.get(0).question());
-        assertEquals("Only the smartest bird.", scenarios.get(0).answer());
-
-        assertEquals("Hello", scenarios.get(1).question());
-        assertEquals("Hi there!", scenarios.get(1).answer());
+    void testForEachScenarioChangedAfter() {
+        ScenarioDto dto = new ScenarioDto(3L, "Where do ducks live?", "In ponds, mostly.");
+        dto.setVersion(7L);
+
+        doAnswer(invocation -> {
+            Consumer<ScenarioDto> consumer = invocation.getArgument(2);
+            consumer.accept(dto);
+            return null;
+        }).when(scenarioDAO).forEachScenarioChangedAfter(eq(2L), anyInt(), any());
+
+        List<Scenario> scenarios = new ArrayList<>();
+        scenarioService.forEachScenarioChangedAfter(2L, scenarios::add);
+        assertEquals(1, scenarios.size());
+        assertEquals(3L, scenarios.get(0).scenarioId());
+        assertEquals(7L, scenarios.get(0).version());
+        assertEquals("Where do ducks live?", scenarios.get(0).question());
     }
 
     @Test
     void testAddScenarioSuccess() {
         PromptLearnRequest request = new PromptLearnRequest("New prompt?", "New answer!");
-        when(scenarioDAO.createScenario(any())).thenReturn(1);
+        when(scenarioDAO.upsertScenario(any())).thenReturn(1);
 
         boolean result = scenarioService.addScenario(request);
         assertTrue(result);
 
         ArgumentCaptor<ScenarioDto> captor = ArgumentCaptor.forClass(ScenarioDto.class);
-        verify(scenarioDAO, times(1)).createScenario(captor.capture());
+        verify(scenarioDAO, times(1)).upsertScenario(captor.capture());
 
         ScenarioDto captured = captor.getValue();
         assertEquals("New prompt?", captured.getPrompt());
@@ -78,7 +84,7 @@ class ScenarioServiceTest {
         assertFalse(scenarioService.addScenario(request1));
         assertFalse(scenarioService.addScenario(request2));
 
-        verify(scenarioDAO, never()).createScenario(any());
+        verify(scenarioDAO, never()).upsertScenario(any());
     }
 
     @Test
@@ -89,6 +95,56 @@ class ScenarioServiceTest {
         assertFalse(scenarioService.addScenario(request1));
         assertFalse(scenarioService.addScenario(request2));
 
-        verify(scenarioDAO, never()).createScenario(any());
+        verify(scenarioDAO, never()).upsertScenario(any());
+    }
+
+    @Test
+    void testSaveScenariosStoresValidScenariosInBatches() {
+        ReflectionTestUtils.setField(scenarioService, "batchSize", 2);
+        stubCreateScenariosFromId(10L);
+
+        List<List<Scenario>> storedBatches = new ArrayList<>();
+        List<LearnItemResult> results = scenarioService.saveScenarios(List.of(
+            new PromptLearnRequest(" First? ", "One"),
+            new PromptLearnRequest("   ", "Empty"),
+            new PromptLearnRequest("Second?", "Two"),
+            new PromptLearnRequest("Third?", "Three")
+        ), storedBatches::add);
+
+        verify(scenarioDAO, times(2)).upsertScenarios(any());
+        assertEquals(2, storedBatches.size());
+        assertEquals("First?", storedBatches.get(0).get(0).question());
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isLearned());
+        assertFalse(results.get(1).isLearned());
+        assertNull(results.get(1).getScenarioId());
+        assertTrue(results.get(2).isLearned());
+        assertEquals(3, results.get(3).getIndex());
+    }
+
+    @Test
+    void testSaveScenariosReportsFailedBatch() {
+        when(scenarioDAO.upsertScenarios(any())).thenThrow(new DataIntegrityViolationException("Value too long"));
+
+        List<Scenario> stored = new ArrayList<>();
+        List<LearnItemResult> results = scenarioService.saveScenarios(List.of(
+            new PromptLearnRequest("First?", "One"),
+            new PromptLearnRequest("Second?", "Two")
+        ), stored::addAll);
+
+        assertTrue(stored.isEmpty());
+        assertFalse(results.get(0).isLearned());
+        assertFalse(results.get(1).isLearned());
+        assertEquals("Could not store scenario", results.get(1).getError());
+    }
+
+    private void stubCreateScenariosFromId(final long firstScenarioId) {
+        long[] nextId = {firstScenarioId};
+        when(scenarioDAO.upsertScenarios(any())).thenAnswer(invocation -> {
+            List<ScenarioDto> batch = invocation.getArgument(0);
+            batch.forEach(dto -> dto.setScenarioId(String.valueOf(nextId[0]++)));
+            return new int[batch.size()];
+        });
     }
-}
\ No newline at end of file
+}
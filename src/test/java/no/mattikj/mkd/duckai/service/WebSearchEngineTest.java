@@ -1,20 +1,54 @@
 package no.mattikj.mkd.duckai.service;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
 
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import no.mattikj.mkd.duckai.cache.WebResponseCache;
+import no.mattikj.mkd.duckai.dao.WebCacheDAO;
+import no.mattikj.mkd.duckai.domain.Upstream;
 import no.mattikj.mkd.duckai.domain.WebSearchType;
+import no.mattikj.mkd.duckai.metrics.DuckAiMetrics;
+import no.mattikj.mkd.duckai.metrics.DuckAiMetrics.UpstreamOutcome;
+import no.mattikj.mkd.duckai.resilience.BulkheadRegistry;
+import no.mattikj.mkd.duckai.resilience.CircuitBreaker;
+import no.mattikj.mkd.duckai.resilience.CircuitBreakerRegistry;
+import no.mattikj.mkd.duckai.resilience.RateLimiterRegistry;
+import no.mattikj.mkd.duckai.resilience.UpstreamStatus;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
 import org.springframework.test.util.ReflectionTestUtils;
 
 // IDK about this one, useless testclass
 class WebSearchEngineTest {
 
     private WebSearchEngine webSearchEngine;
+    private CircuitBreakerRegistry circuitBreakers;
+    private HttpServer server;
+    private AtomicInteger upstreamCalls;
 
     @BeforeEach
     void setUp() {
-        webSearchEngine = new WebSearchEngine();
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("duckai.rate-limit.wikipedia.interval-ms", "1");
+        DuckAiMetrics metrics = new DuckAiMetrics(new SimpleMeterRegistry());
+        circuitBreakers = new CircuitBreakerRegistry(environment, event -> { }, metrics);
+        webSearchEngine = new WebSearchEngine(
+            new WebResponseCache(mock(WebCacheDAO.class), 100, 60_000, 60_000, 0, 1_000, false),
+            new RateLimiterRegistry(environment),
+            circuitBreakers,
+            new BulkheadRegistry(environment),
+            HttpClient.newHttpClient(),
+            metrics);
 
         // Inject placeholder values so no real HTTP call is made
         ReflectionTestUtils.setField(webSearchEngine, "userAgent", "DuckAI-Test");
@@ -22,11 +56,16 @@ class WebSearchEngineTest {
         ReflectionTestUtils.setField(webSearchEngine, "jokeBaseUrl", "https://example.com/joke");
         ReflectionTestUtils.setField(webSearchEngine, "openLibrarySearchUrl", "https://example.com/book?q=");
         ReflectionTestUtils.setField(webSearchEngine, "openLibraryCoverUrl", "https://example.com/covers/");
-        ReflectionTestUtils.setField(webSearchEngine, "minIntervalMs", 0L);
-        ReflectionTestUtils.setField(webSearchEngine, "connectTimeout", 1000);
         ReflectionTestUtils.setField(webSearchEngine, "readTimeout", 1000);
     }
 
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
     @Test
     void testNullPromptReturnsNull() {
         assertNull(webSearchEngine.searchInternetForResponse(null, WebSearchType.WIKI));
@@ -51,4 +90,84 @@ class WebSearchEngineTest {
         // We don’t expect real HTTP results, so null is valid
         assertNull(result);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testOpenCircuitShortCircuitsWithoutCallingUpstream() {
+        CircuitBreaker breaker = circuitBreakers.get(Upstream.WIKIPEDIA);
+        for (int i = 0; i < 10; i++) {
+            breaker.onResult(0, true);
+        }
+
+        CompletableFuture<String> response = webSearchEngine.searchInternetForResponseAsync("Who was Alan Turing?", WebSearchType.WIKI);
+
+        assertTrue(response.isDone());
+        assertNull(response.join());
+        assertEquals(CircuitBreaker.State.OPEN, webSearchEngine.circuitState(Upstream.WIKIPEDIA));
+        assertEquals(CircuitBreaker.State.CLOSED, webSearchEngine.circuitState(Upstream.OPEN_LIBRARY));
+    }
+
+    @Test
+    void testNotFoundAnswersLeaveCircuitClosed() throws Exception {
+        serveStatus(404);
+
+        for (int i = 0; i < 25; i++) {
+            assertNull(webSearchEngine.searchInternetForResponse("Obscure topic " + i, WebSearchType.WIKI));
+        }
+
+        UpstreamStatus status = webSearchEngine.upstreamStatuses().get(Upstream.WIKIPEDIA);
+        assertEquals(CircuitBreaker.State.CLOSED, webSearchEngine.circuitState(Upstream.WIKIPEDIA));
+        assertEquals(UpstreamOutcome.CLIENT_ERROR, status.lastOutcome());
+        assertEquals(0, status.consecutiveFailures());
+    }
+
+    @Test
+    void testServerErrorsOpenCircuit() throws Exception {
+        serveStatus(503);
+
+        for (int i = 0; i < 25; i++) {
+            webSearchEngine.searchInternetForResponse("Obscure topic " + i, WebSearchType.WIKI);
+        }
+
+        UpstreamStatus status = webSearchEngine.upstreamStatuses().get(Upstream.WIKIPEDIA);
+        assertEquals(CircuitBreaker.State.OPEN, webSearchEngine.circuitState(Upstream.WIKIPEDIA));
+        assertEquals(UpstreamOutcome.ERROR, status.lastOutcome());
+    }
+
+    @Test
+    void testNotFoundIsCachedAsEmptyResult() throws Exception {
+        serveStatus(404);
+
+        assertNull(webSearchEngine.searchInternetForResponse("Obscure topic", WebSearchType.WIKI));
+        assertNull(webSearchEngine.searchInternetForResponse("Obscure topic", WebSearchType.WIKI));
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void testServerErrorsAreNotCached() throws Exception {
+        serveStatus(503);
+
+        assertNull(webSearchEngine.searchInternetForResponse("Obscure topic", WebSearchType.WIKI));
+        assertNull(webSearchEngine.searchInternetForResponse("Obscure topic", WebSearchType.WIKI));
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void testSanitizePromptForWikiJoinsCapitalizedWords() {
+        assertEquals("Java_(programming_Language)", webSearchEngine.sanitizePromptForWiki("What is Java (programming language)?"));
+        assertEquals("Hvor_Bor_Blåbærtrollet", webSearchEngine.sanitizePromptForWiki("Hvor bor blåbærtrollet?"));
+        assertEquals("", webSearchEngine.sanitizePromptForWiki("  what is the  "));
+    }
+
+    private void serveStatus(final int status) throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        upstreamCalls = new AtomicInteger();
+        server.createContext("/", exchange -> {
+            upstreamCalls.incrementAndGet();
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        ReflectionTestUtils.setField(webSearchEngine, "wikipediaBaseUrl",
+            "http://127.0.0.1:" + server.getAddress().getPort() + "/wiki/");
+    }
+}